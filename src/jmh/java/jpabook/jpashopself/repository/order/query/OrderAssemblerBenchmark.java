@@ -0,0 +1,90 @@
+package jpabook.jpashopself.repository.order.query;
+
+import jpabook.jpashopself.domain.Address;
+import jpabook.jpashopself.domain.OrderStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * 주문 DTO 조립 비교 - 기존 stream collector vs OrderAssembler
+ * 주문 한 건에 주문상품 평균 3개, rows 는 주문상품(flat row) 수
+ *
+ * ./gradlew jmh  (결과: build/reports/jmh/results.json)
+ * GC 할당량까지 보려면 jmh { profilers = ['gc'] }
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderAssemblerBenchmark {
+
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Param({"10000", "100000", "1000000"})
+    int rows;
+
+    List<OrderQueryDto> orders;
+    List<OrderItemQueryDto> items;
+    List<OrderFlatDto> flats;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int orderCount = rows / ITEMS_PER_ORDER;
+        LocalDateTime now = LocalDateTime.now();
+        Address address = new Address("서울", "강가", "123-123");
+
+        orders = new ArrayList<>(orderCount);
+        items = new ArrayList<>(rows);
+        flats = new ArrayList<>(rows);
+        for (long orderId = 1; orderId <= orderCount; orderId++) {
+            orders.add(new OrderQueryDto(orderId, "회원" + orderId, now, OrderStatus.ORDER, address));
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                items.add(new OrderItemQueryDto(orderId, "상품" + i, 10000, i + 1));
+                flats.add(new OrderFlatDto(orderId, "회원" + orderId, now, OrderStatus.ORDER, address, "상품" + i, 10000, i + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public void v5_groupingBy(Blackhole bh) {
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = items.stream()
+                .collect(groupingBy(OrderItemQueryDto::getOrderId));
+        orders.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+        bh.consume(orders);
+    }
+
+    @Benchmark
+    public void v5_assembler(Blackhole bh) {
+        bh.consume(OrderAssembler.attachItems(orders, OrderQueryDto::getOrderId,
+                items, OrderItemQueryDto::getOrderId, OrderQueryDto::setOrderItems));
+    }
+
+    @Benchmark
+    public void v6_groupingBy(Blackhole bh) {
+        bh.consume(flats.stream()
+                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(),
+                                o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                        mapping(o -> new OrderItemQueryDto(o.getOrderId(),
+                                o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
+                )).entrySet().stream()
+                .map(e -> new OrderQueryDto(e.getKey().getOrderId(),
+                        e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),
+                        e.getKey().getAddress(), e.getValue()))
+                .collect(toList()));
+    }
+
+    @Benchmark
+    public void v6_assembler(Blackhole bh) {
+        bh.consume(OrderAssembler.groupFlat(flats, OrderFlatDto::getOrderId,
+                o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()),
+                OrderQueryDto::setOrderItems));
+    }
+}
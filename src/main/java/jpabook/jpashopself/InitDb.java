@@ -2,6 +2,8 @@ package jpabook.jpashopself;
 
 import jpabook.jpashopself.domain.*;
 import jpabook.jpashopself.domain.item.Book;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +39,8 @@ public class InitDb {
     static class InitService {
 
         private final EntityManager em;
+        private final StockManager stockManager;
+        private final OrderSummaryRepository orderSummaryRepository;
 
         public void dbInit1() {
             Member member = createMember("userA", "서울", "1", "1111");
@@ -48,12 +52,13 @@ public class InitDb {
             Book book2 = createBook("JPA2 BOOk", 20000, 100);
             em.persist(book2);
 
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
+            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1, stockManager);
+            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2, stockManager);
 
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            orderSummaryRepository.save(order);
 
         }
 
@@ -88,12 +93,13 @@ public class InitDb {
             Book book2 = createBook("SPRING2 BOOk", 40000, 300);
             em.persist(book2);
 
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
+            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3, stockManager);
+            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4, stockManager);
 
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            orderSummaryRepository.save(order);
 
         }
     }
@@ -0,0 +1,32 @@
+package jpabook.jpashopself.api;
+
+import jpabook.jpashopself.repository.CatalogCache;
+import jpabook.jpashopself.repository.CatalogCacheMetrics;
+import jpabook.jpashopself.repository.ItemSnapshot;
+import jpabook.jpashopself.service.ItemService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 상품 목록 API (상품 목록 캐시)
+ */
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+
+    private final ItemService itemService;
+    private final CatalogCache catalogCache;
+
+    @GetMapping("/api/v2/items")
+    public List<ItemSnapshot> items() {
+        return itemService.findItems();
+    }
+
+    @GetMapping("/api/v2/items/cache/metrics")
+    public CatalogCacheMetrics cacheMetrics() {
+        return catalogCache.metrics();
+    }
+}
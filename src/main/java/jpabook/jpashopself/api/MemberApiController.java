@@ -1,6 +1,7 @@
 package jpabook.jpashopself.api;
 
 import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.service.IdempotencyService;
 import jpabook.jpashopself.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -16,6 +17,7 @@ import java.util.stream.Collectors;
 public class MemberApiController {
 
     private final MemberService memberService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping("/api/v1/members")
     public List<Member> membersV1() {
@@ -46,18 +48,20 @@ public class MemberApiController {
 
 
     @PostMapping("/api/v1/members")
-    public CreateMemberResponse saveMemberV1(@RequestBody @Valid Member member) {
-        Long id = memberService.join(member);
+    public CreateMemberResponse saveMemberV1(@RequestBody @Valid Member member,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long id = idempotencyService.execute("member", idempotencyKey, () -> memberService.join(member));
         return new CreateMemberResponse(id);
     }
 
     @PostMapping("/api/v2/members")
-    public CreateMemberResponse saveMemberV2(@RequestBody @Valid CreateMemberRequest request) {
+    public CreateMemberResponse saveMemberV2(@RequestBody @Valid CreateMemberRequest request,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
 
         Member member = new Member();
         member.setName(request.getName());
 
-        Long id = memberService.join(member);
+        Long id = idempotencyService.execute("member", idempotencyKey, () -> memberService.join(member));
         return new CreateMemberResponse(id);
     }
 
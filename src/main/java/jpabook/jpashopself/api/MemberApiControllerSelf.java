@@ -3,6 +3,7 @@ package jpabook.jpashopself.api;
 import jpabook.jpashopself.domain.Address;
 import jpabook.jpashopself.domain.Member;
 import jpabook.jpashopself.repository.MemberRepository;
+import jpabook.jpashopself.service.IdempotencyService;
 import jpabook.jpashopself.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -20,6 +21,7 @@ import java.util.stream.Collectors;
 public class MemberApiControllerSelf {
 
     private final MemberService memberService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * 회원 등록V1 : 요청 값으로 Member 엔티티를 직접 받는다
@@ -28,8 +30,9 @@ public class MemberApiControllerSelf {
      * 엔티티가 변경되면 API 스펙이 변한다.
      */
     @PostMapping("/api/save/v1/members")
-    public CreateMemberResponseSelf saveMemberV1(@RequestBody @Valid Member member) {
-        Long id = memberService.join(member);
+    public CreateMemberResponseSelf saveMemberV1(@RequestBody @Valid Member member,
+                                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Long id = idempotencyService.execute("member", idempotencyKey, () -> memberService.join(member));
         return new CreateMemberResponseSelf(id);
     }
 
@@ -49,14 +52,15 @@ public class MemberApiControllerSelf {
      * @ResponseBody는 자바 객체를 XML/JSON으로 변환해서 응답 객체의 Body에 실어 전송할 수있음.
      */
     @PostMapping("/api/save/v2/members")
-    public CreateMemberResponseSelf saveMemberV2(@RequestBody @Valid CreateMemberRequestSelf request) {
+    public CreateMemberResponseSelf saveMemberV2(@RequestBody @Valid CreateMemberRequestSelf request,
+                                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Member member = new Member();
         member.setName(request.getName());
 
         Address address = new Address(request.getCity(), request.getStreet(), request.getZipcode());
         member.setAddress(address);
 
-        Long id = memberService.join(member);
+        Long id = idempotencyService.execute("member", idempotencyKey, () -> memberService.join(member));
         return new CreateMemberResponseSelf(id);
     }
 
@@ -1,20 +1,47 @@
 package jpabook.jpashopself.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jpabook.jpashopself.domain.*;
+import jpabook.jpashopself.repository.OrderJsonCache;
 import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.repository.order.query.OrderAssembler;
 import jpabook.jpashopself.repository.order.query.OrderFlatDto;
 import jpabook.jpashopself.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashopself.repository.order.query.OrderQueryDto;
 import jpabook.jpashopself.repository.order.query.OrderQueryRepository;
+import jpabook.jpashopself.service.BulkCancelResult;
+import jpabook.jpashopself.service.IdempotencyService;
+import jpabook.jpashopself.service.BulkOrder;
+import jpabook.jpashopself.service.BulkOrderResult;
+import jpabook.jpashopself.service.OrderBulkService;
+import jpabook.jpashopself.service.OrderGroupCommitter;
+import jpabook.jpashopself.service.OrderService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.*;
@@ -23,8 +50,148 @@ import static java.util.stream.Collectors.*;
 @RequiredArgsConstructor
 public class OrderApiController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    //전체 내보내기에서 주문상품을 채우는 주문 수 (커서 fetch size)
+    @Value("${jpashop.order.export.chunk-size:1000}")
+    private int exportChunkSize;
+
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final OrderService orderService;
+    private final OrderGroupCommitter orderGroupCommitter;
+    private final IdempotencyService idempotencyService;
+    private final OrderBulkService orderBulkService;
+    private final ObjectMapper objectMapper;
+    private final OrderJsonCache orderJsonCache;
+
+    /**
+     * 장바구니 주문 등록 - 여러 상품을 주문 한 건, 트랜잭션 한번으로 등록
+     * Idempotency-Key 헤더가 같은 재시도 요청은 처음 등록된 주문 id 를 돌려준다.
+     */
+    @PostMapping("/api/v2/orders")
+    public CreateOrderResponse saveOrderV2(@RequestBody @Valid CreateOrderRequest request,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        List<OrderLine> orderLines = request.getOrderItems().stream()
+                .map(i -> new OrderLine(i.getItemId(), i.getCount()))
+                .collect(toList());
+
+        Long id = idempotencyService.execute("order", idempotencyKey,
+                () -> orderGroupCommitter.order(request.getMemberId(), orderLines));
+        return new CreateOrderResponse(id);
+    }
+
+    /**
+     * 대량 주문 등록 - 요청 본문은 NDJSON (한 줄에 CreateOrderRequest 하나)
+     * 본문을 한 줄씩 읽으면서 chunk 단위로 저장하므로 전체 요청을 메모리에 올리지 않는다.
+     * 실패한 줄은 줄 번호와 사유를 응답에 담고 나머지는 계속 처리한다.
+     */
+    @PostMapping(value = "/api/v2/orders/bulk", consumes = "application/x-ndjson")
+    public BulkOrderResult saveOrdersBulk(HttpServletRequest request) throws IOException {
+        return orderBulkService.order(new BulkOrderReader(request.getReader()));
+    }
+
+    /**
+     * 주문 일괄 취소 - 주문 id 목록
+     */
+    @PostMapping("/api/v2/orders/cancel")
+    public BulkCancelResult cancelOrders(@RequestBody @Valid CancelOrdersRequest request) {
+        return orderService.cancelOrders(request.getOrderIds());
+    }
+
+    /**
+     * 주문 일괄 취소 - 검색 조건 (회원 이름, 주문 상태)
+     */
+    @PostMapping("/api/v2/orders/cancel/search")
+    public BulkCancelResult cancelOrdersBySearch(@RequestBody OrderSearch orderSearch) {
+        return orderService.cancelOrders(orderSearch);
+    }
+
+    /**
+     * NDJSON 본문을 한 줄씩 읽어서 BulkOrder 로 변환
+     */
+    private class BulkOrderReader implements Iterator<BulkOrder> {
+
+        private final BufferedReader reader;
+        private String nextLine;
+        private int lineNo;
+
+        BulkOrderReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (nextLine == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    lineNo++;
+                    if (!line.isBlank()) {
+                        nextLine = line;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public BulkOrder next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = nextLine;
+            nextLine = null;
+
+            try {
+                CreateOrderRequest request = objectMapper.readValue(line, CreateOrderRequest.class);
+                if (request.getOrderItems() == null) {
+                    return BulkOrder.invalid(lineNo, "orderItems 가 없습니다.");
+                }
+                List<OrderLine> orderLines = request.getOrderItems().stream()
+                        .map(i -> new OrderLine(i.getItemId(), i.getCount()))
+                        .collect(toList());
+                return BulkOrder.of(lineNo, request.getMemberId(), orderLines);
+            } catch (JsonProcessingException e) {
+                return BulkOrder.invalid(lineNo, "요청을 읽을 수 없습니다. " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty @Valid
+        private List<OrderLineRequest> orderItems;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Positive
+        private int count;
+    }
+
+    @Data
+    static class CancelOrdersRequest {
+        @NotEmpty
+        private List<Long> orderIds;
+    }
+
+    @Data
+    static class CreateOrderResponse {
+        private Long id;
+
+        public CreateOrderResponse(Long id) {
+            this.id = id;
+        }
+    }
 
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1() {
@@ -49,9 +216,33 @@ public class OrderApiController {
         return collect;
     }
 
+    /**
+     * limit 또는 cursor 를 주면 2단계 조회로 한 페이지만 가져온다. (주문 id 페이지 -> fetch join)
+     * - offset/limit: 주문 id 순서
+     * - cursor/limit: 최근 주문부터 keyset 페이징 (첫 페이지는 cursor=), 다음 페이지 cursor 는 X-Next-Cursor 응답 헤더
+     * 둘 다 없으면 전체 조회 (페이징 없음)
+     */
     @GetMapping("/api/v3/orders")
-    public List<OrderDto> ordersV3() {
-        List<Order> orders = orderRepository.findAllWithItem();
+    public List<OrderDto> ordersV3(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            HttpServletResponse response) {
+        List<Order> orders;
+        if (cursor != null) {
+            int size = Math.max(1, Math.min(limit == null ? 100 : limit, MAX_PAGE_SIZE));
+            OrderCursor after = OrderCursor.decode(cursor);
+            orders = after == null
+                    ? orderRepository.findAllWithItem(null, null, size)
+                    : orderRepository.findAllWithItem(after.getOrderDate(), after.getOrderId(), size);
+            if (orders.size() == size) {
+                response.setHeader("X-Next-Cursor", OrderCursor.encode(orders.get(size - 1)));
+            }
+        } else if (limit != null) {
+            orders = orderRepository.findAllWithItem(offset, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        } else {
+            orders = orderRepository.findAllWithItem();
+        }
 
         for (Order order : orders) {
             System.out.println("order ref=" + order + " id=" + order.getId());
@@ -78,30 +269,121 @@ public class OrderApiController {
         return result;
     }
 
-    @GetMapping("/api/v4/orders")
-    public List<OrderQueryDto> ordersV4() {
-        return  orderQueryRepository.findOrderQueryDtos();
+    /**
+     * keyset 페이징 - 몇번째 페이지든 같은 비용
+     * 응답의 nextCursor 를 다음 요청의 cursor 로 넘긴다. 마지막 페이지면 nextCursor 는 null 이다.
+     * 주문상품 컬렉션은 v3.1 과 같이 default_batch_fetch_size 로 in 쿼리 한번에 조회한다.
+     */
+    @GetMapping("/api/v3.2/orders")
+    public OrderPage<OrderDto> ordersV3_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit)
+    {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        OrderCursor after = OrderCursor.decode(cursor);
+        List<Order> orders = after == null
+                ? orderRepository.findAllWithMemberDelivery(null, null, size + 1)
+                : orderRepository.findAllWithMemberDelivery(after.getOrderDate(), after.getOrderId(), size + 1);
+
+        boolean hasNext = orders.size() > size;
+        List<Order> page = hasNext ? orders.subList(0, size) : orders;
+
+        List<OrderDto> result = page.stream()
+                .map(o -> new OrderDto(o))
+                .collect(toList());
+        return new OrderPage<>(result, hasNext ? OrderCursor.encode(page.get(size - 1)) : null);
     }
 
-    @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> orderV5() {
-        return orderQueryRepository.findAllByDto_optimization();
+    @Getter
+    @AllArgsConstructor
+    static class OrderPage<T> {
+        private List<T> data;
+        private String nextCursor;
+    }
+
+    /**
+     * v4, v5 는 주문 JSON 조각 캐시로 응답한다.
+     * 주문 id, 버전만 조회하고 캐시에 있는 주문은 직렬화된 조각을 그대로 쓴다. 없는 주문만 v5 방식으로 조회한다.
+     */
+    @GetMapping(value = "/api/v4/orders", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void ordersV4(HttpServletResponse response) throws IOException {
+        writeFragments(response, orderJsonCache.get(orderQueryRepository.findOrderVersions(),
+                orderQueryRepository::findAllByDto_optimization));
+    }
+
+    @GetMapping(value = "/api/v5/orders", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void orderV5(HttpServletResponse response) throws IOException {
+        writeFragments(response, orderJsonCache.get(orderQueryRepository.findOrderVersions(),
+                orderQueryRepository::findAllByDto_optimization));
+    }
+
+    /**
+     * 전체 주문 내보내기 (v5 방식) - 응답을 주문 한 건씩 바로 써서 전체 결과를 메모리에 올리지 않는다.
+     */
+    @GetMapping(value = "/api/v5/orders/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportOrdersV5() {
+        return out -> writeJsonArray(out, consumer -> orderQueryRepository.streamAllByDto_optimization(exportChunkSize, consumer));
+    }
+
+    /**
+     * 전체 주문 내보내기 (v6 방식) - flat 조회 한번을 스트리밍하면서 주문별로 묶어서 쓴다.
+     */
+    @GetMapping(value = "/api/v6/orders/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportOrdersV6() {
+        return out -> writeJsonArray(out, consumer -> orderQueryRepository.streamAllByDto_flat(exportChunkSize, consumer));
+    }
+
+    /**
+     * json 조각을 배열로 이어 붙여서 응답에 바로 쓴다.
+     */
+    private void writeFragments(HttpServletResponse response, List<byte[]> fragments) throws IOException {
+        long length = 2 + Math.max(0, fragments.size() - 1);
+        for (byte[] fragment : fragments) {
+            length += fragment.length;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLengthLong(length);
+
+        OutputStream out = response.getOutputStream();
+        out.write('[');
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(fragments.get(i));
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    /**
+     * 끝나면 generator 를 닫아서 버퍼를 반환한다. 응답 스트림은 스프링이 닫으므로 generator 가 닫지 않는다.
+     */
+    private void writeJsonArray(OutputStream out, Consumer<Consumer<OrderQueryDto>> source) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            source.accept(order -> {
+                try {
+                    generator.writeObject(order);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
     }
 
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> orderV6() {
         List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
 
-        return flats.stream()
-                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(),
-                                o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        mapping(o -> new OrderItemQueryDto(o.getOrderId(),
-                                o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-                )).entrySet().stream()
-                .map(e -> new OrderQueryDto(e.getKey().getOrderId(),
-                        e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),
-                        e.getKey().getAddress(), e.getValue()))
-                .collect(toList());
+        //주문 id 순으로 정렬된 flat row 를 한번 돌면서 주문별로 묶는다
+        return OrderAssembler.groupFlat(flats, OrderFlatDto::getOrderId,
+                o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress(),
+                        o.getTotalPrice(), o.getItemCount()),
+                o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()),
+                OrderQueryDto::setOrderItems);
     }
 
 
@@ -114,6 +396,8 @@ public class OrderApiController {
         private LocalDateTime orderDate;
         private OrderStatus orderStatus;
         private Address address;
+        private int totalPrice;
+        private int itemCount;
         private List<OrderItemDto> orderItems;
 
         public OrderDto(Order order) {
@@ -122,6 +406,8 @@ public class OrderApiController {
             orderDate = order.getOrderDate();
             orderStatus = order.getStatus();
             address = order.getDelivery().getAddress();
+            totalPrice = order.getTotalPrice();
+            itemCount = order.getItemCount();
             orderItems = order.getOrderItems().stream()
                     .map(orderItem -> new OrderItemDto(orderItem))
                     .collect(toList());
@@ -6,6 +6,7 @@ import jpabook.jpashopself.domain.OrderItem;
 import jpabook.jpashopself.domain.OrderStatus;
 import jpabook.jpashopself.repository.OrderRepository;
 import jpabook.jpashopself.repository.order.query.*;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -147,6 +148,36 @@ public class OrderApiControllerSelf {
         return result;
     }
 
+    /**
+     * v3.2 keyset 페이징
+     * offset 은 앞 페이지 row 를 모두 읽고 버리므로 뒤 페이지로 갈수록 느려진다.
+     * 마지막으로 받은 주문의 (주문시간, id) 다음부터 인덱스로 바로 찾아서 limit 건만 읽는다.
+     * 응답의 nextCursor 를 다음 요청의 cursor 로 넘긴다.
+     */
+    @GetMapping("/api/find/v3.2/orders")
+    public OrderPageSelf orderV3_cursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        int size = Math.max(1, Math.min(limit, 1000));
+        OrderCursor after = OrderCursor.decode(cursor);
+        List<Order> orders = after == null
+                ? orderRepository.findAllWithMemberDelivery(null, null, size + 1)
+                : orderRepository.findAllWithMemberDelivery(after.getOrderDate(), after.getOrderId(), size + 1);
+
+        boolean hasNext = orders.size() > size;
+        List<Order> page = hasNext ? orders.subList(0, size) : orders;
+
+        List<OrderDtoSelf> result = page.stream().map(o -> new OrderDtoSelf(o))
+                .collect(toList());
+        return new OrderPageSelf(result, hasNext ? OrderCursor.encode(page.get(size - 1)) : null);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class OrderPageSelf {
+        private List<OrderDtoSelf> data;
+        private String nextCursor;
+    }
+
     /**
      * v4. JPA에서 DTO 직접 조회
      */
@@ -171,15 +202,10 @@ public class OrderApiControllerSelf {
     public List<OrderQueryDtoSelf> ordersV6() {
         List<OrderFlatDtoSelf> flats = orderQueryRepositorySelf.findALlByDto_flat();
 
-        return flats.stream()
-                .collect(groupingBy(o -> new OrderQueryDtoSelf(o.getOrderId(),
-                                o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        mapping(o -> new OrderItemQueryDtoSelf(o.getOrderId(),
-                                o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-                )).entrySet().stream()
-                .map(e -> new OrderQueryDtoSelf(e.getKey().getOrderId(),
-                        e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),
-                        e.getKey().getAddress()))
-                .collect(toList());
+        //주문 id 순 flat row 를 한번 돌면서 주문별로 묶는다. (주문상품 목록도 같이 채운다)
+        return OrderAssembler.groupFlat(flats, OrderFlatDtoSelf::getOrderId,
+                o -> new OrderQueryDtoSelf(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                o -> new OrderItemQueryDtoSelf(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()),
+                OrderQueryDtoSelf::setOrderItems);
     }
 }
@@ -0,0 +1,49 @@
+package jpabook.jpashopself.api;
+
+import jpabook.jpashopself.domain.Order;
+import jpabook.jpashopself.exception.InvalidCursorException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 주문 목록 keyset 페이징 커서
+ * 마지막 주문의 (주문시간, id) 를 클라이언트가 해석하지 못하도록 base64 토큰으로 주고받는다.
+ */
+@Getter
+class OrderCursor {
+
+    private final LocalDateTime orderDate;
+    private final Long orderId;
+
+    private OrderCursor(LocalDateTime orderDate, Long orderId) {
+        this.orderDate = orderDate;
+        this.orderId = orderId;
+    }
+
+    static String encode(Order lastOrder) {
+        String value = lastOrder.getOrderDate() + "|" + lastOrder.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 토큰이 없으면 첫 페이지 (null)
+     * 해석할 수 없는 토큰은 InvalidCursorException (400)
+     */
+    static OrderCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new OrderCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("잘못된 cursor 입니다.", e);
+        }
+    }
+}
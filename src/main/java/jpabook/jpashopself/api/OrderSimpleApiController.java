@@ -6,10 +6,16 @@ import jpabook.jpashopself.domain.OrderSearch;
 import jpabook.jpashopself.domain.OrderStatus;
 import jpabook.jpashopself.repository.OrderRepository;
 import jpabook.jpashopself.repository.order.simplequery.OrderSimpleQueryDto;
-import jpabook.jpashopself.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryCheck;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryRepository;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
@@ -27,7 +33,7 @@ import java.util.stream.Collectors;
 public class OrderSimpleApiController {
 
     private final OrderRepository orderRepository;
-    private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
 
     // h1bernate5Module 라이브러리를 깔아 bean등록해야 값이 출력됨
     // 라이브러리를 통해 LAZY로딩을 무시한다.
@@ -59,9 +65,48 @@ public class OrderSimpleApiController {
         return result;
     }
 
+    //회원의 주문 이력 (member.orders 를 읽지 않고 페이징 조회)
+    @GetMapping("/api/v3/members/{memberId}/simple-orders")
+    public MemberOrderPage memberOrders(@PathVariable("memberId") Long memberId,
+                                        @RequestParam(value = "page", defaultValue = "0") int page,
+                                        @RequestParam(value = "size", defaultValue = "20") int size) {
+        Page<Order> orders = orderRepository.findPageByMember(memberId, page, size);
+        List<SimpleOrderDto> result = orders.getContent().stream()
+                .map(o -> new SimpleOrderDto(o))
+                .collect(Collectors.toList());
+
+        return new MemberOrderPage(result, orders.getTotalElements());
+    }
+
+    //조인 없이 주문 요약 테이블(order_summary)만 읽는다
     @GetMapping("/api/v4/simple-orders")
     public List<OrderSimpleQueryDto> orderV4() {
-        return orderSimpleQueryRepository.findOrderDtos();
+        return orderSummaryRepository.findOrderDtos();
+    }
+
+    //주문 요약을 주문 원본으로 다시 만든다
+    @PostMapping("/api/v4/simple-orders/rebuild")
+    public RebuildResult rebuildSummaries() {
+        return new RebuildResult(orderSummaryRepository.rebuild());
+    }
+
+    //주문 요약과 주문 원본 비교
+    @GetMapping("/api/v4/simple-orders/check")
+    public OrderSummaryCheck checkSummaries() {
+        return orderSummaryRepository.check();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class MemberOrderPage {
+        private List<SimpleOrderDto> data;
+        private long total;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RebuildResult {
+        private int summaries;
     }
 
     @Data
@@ -71,6 +116,8 @@ public class OrderSimpleApiController {
         private LocalDateTime orderDate;
         private OrderStatus orderStatus;
         private Address address;
+        private int totalPrice;
+        private int itemCount;
 
         public SimpleOrderDto(Order order) {
             orderId = order.getId();
@@ -78,6 +125,8 @@ public class OrderSimpleApiController {
             orderDate = order.getOrderDate();
             orderStatus = order.getStatus();
             address = order.getDelivery().getAddress();
+            totalPrice = order.getTotalPrice();
+            itemCount = order.getItemCount();
         }
     }
 
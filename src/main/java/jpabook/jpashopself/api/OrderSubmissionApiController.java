@@ -0,0 +1,109 @@
+package jpabook.jpashopself.api;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.exception.OrderQueueFullException;
+import jpabook.jpashopself.service.OrderSubmissionMetrics;
+import jpabook.jpashopself.service.OrderSubmissionService;
+import jpabook.jpashopself.service.OrderTicket;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 비동기 주문 접수 API
+ * 접수하면 202 와 접수표를 바로 돌려주고, 결과는 접수표 조회(polling) 또는 결과 대기(long polling)로 받는다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderSubmissionApiController {
+
+    private static final long MAX_WAIT_MILLIS = 30_000;
+
+    private final OrderSubmissionService orderSubmissionService;
+
+    @PostMapping("/api/v2/orders/async")
+    public ResponseEntity<OrderTicket> submitOrder(@RequestBody @Valid SubmitOrderRequest request) {
+        List<OrderLine> orderLines = request.getOrderItems().stream()
+                .map(i -> new OrderLine(i.getItemId(), i.getCount()))
+                .collect(toList());
+
+        OrderTicket ticket = orderSubmissionService.submit(request.getMemberId(), orderLines);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ticket);
+    }
+
+    /**
+     * 접수표 조회 (polling)
+     */
+    @GetMapping("/api/v2/orders/async/{ticketId}")
+    public ResponseEntity<OrderTicket> findTicket(@PathVariable("ticketId") String ticketId) {
+        return orderSubmissionService.findTicket(ticketId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 처리 결과 대기 (long polling)
+     * 처리가 끝나면 바로 응답하고, wait 밀리초 안에 끝나지 않으면 202 와 현재 접수표를 돌려준다.
+     * wait 는 1 ~ MAX_WAIT_MILLIS 로 맞춘다. (DeferredResult 는 0 이하면 타임아웃이 없다)
+     * 기다리는 동안 서블릿 스레드는 반환된다.
+     */
+    @GetMapping("/api/v2/orders/async/{ticketId}/result")
+    public DeferredResult<ResponseEntity<OrderTicket>> awaitTicket(
+            @PathVariable("ticketId") String ticketId,
+            @RequestParam(value = "wait", defaultValue = "10000") long wait) {
+        OrderTicket ticket = orderSubmissionService.findTicket(ticketId).orElse(null);
+        if (ticket == null) {
+            DeferredResult<ResponseEntity<OrderTicket>> notFound = new DeferredResult<>();
+            notFound.setResult(ResponseEntity.notFound().build());
+            return notFound;
+        }
+
+        DeferredResult<ResponseEntity<OrderTicket>> result = new DeferredResult<>(
+                Math.max(1, Math.min(wait, MAX_WAIT_MILLIS)), ResponseEntity.status(HttpStatus.ACCEPTED).body(ticket));
+        ticket.getResult().thenAccept(done -> result.setResult(ResponseEntity.ok(done)));
+        return result;
+    }
+
+    @GetMapping("/api/v2/orders/async/metrics")
+    public OrderSubmissionMetrics metrics() {
+        return orderSubmissionService.metrics();
+    }
+
+    /**
+     * 대기열이 가득 차면 503 과 Retry-After 로 잠시 후 재시도하게 한다.
+     */
+    @ExceptionHandler(OrderQueueFullException.class)
+    public ResponseEntity<String> queueFull(OrderQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
+    @Data
+    static class SubmitOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty @Valid
+        private List<OrderLineRequest> orderItems;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Positive
+        private int count;
+    }
+}
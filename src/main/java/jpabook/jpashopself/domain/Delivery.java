@@ -2,15 +2,21 @@ package jpabook.jpashopself.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
-import java.util.List;
 
 @Entity
 @Getter @Setter
 public class Delivery {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "delivery_seq")
+    @GenericGenerator(name = "delivery_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "delivery_seq"))
     @Column(name = "delivery_id")
     private Long id;
 
@@ -20,6 +26,17 @@ public class Delivery {
     @Enumerated(EnumType.STRING)
     private DeliveryStatus status;  // [READY(준비) , COMP(배송)]
 
+    //mappedBy 쪽은 FK 가 없어서 프록시를 만들 수 없다. (배송을 읽을때마다 주문을 따로 조회했음)
+    //바이트코드 향상(build.gradle hibernate.enhance)으로 처음 getOrder() 할때 읽는다.
     @OneToOne(mappedBy = "delivery", fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     private Order order;
+
+    //==생성 메서드==//
+    public static Delivery createDelivery(Address address) {
+        Delivery delivery = new Delivery();
+        delivery.setAddress(address);
+        delivery.setStatus(DeliveryStatus.READY);
+        return delivery;
+    }
 }
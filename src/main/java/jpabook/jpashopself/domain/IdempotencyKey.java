@@ -0,0 +1,45 @@
+package jpabook.jpashopself.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 처리한 요청의 Idempotency-Key 와 결과 (재시도 요청 중복 처리 방지)
+ * 처리 중인 키는 resultId 가 null 이다. 처리하는 요청(claimToken)은 leaseExpiresAt 까지만 키를 잡고 있고,
+ * 그때까지 끝나지 않으면 (서버 장애 등) 같은 키의 재시도가 넘겨받는다.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "created_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key", length = 200)
+    private String key;
+
+    private Long resultId;
+
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;  //키를 처리 중인 요청
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;  //처리 중 임대 만료 시각
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    //==생성 메서드==//
+    public static IdempotencyKey createKey(String key, String claimToken, LocalDateTime leaseExpiresAt) {
+        IdempotencyKey idempotencyKey = new IdempotencyKey();
+        idempotencyKey.key = key;
+        idempotencyKey.claimToken = claimToken;
+        idempotencyKey.leaseExpiresAt = leaseExpiresAt;
+        idempotencyKey.createdAt = LocalDateTime.now();
+        return idempotencyKey;
+    }
+}
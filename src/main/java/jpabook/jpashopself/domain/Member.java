@@ -3,16 +3,25 @@ package jpabook.jpashopself.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @Setter
 public class Member {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "member_seq"))
     @Column(name = "member_id")
     private Long id;
 
@@ -21,6 +30,7 @@ public class Member {
     @Embedded
     private Address address;
 
+    //주문할때는 읽지 않는다 (Order.setMember). 회원의 주문 이력은 OrderRepository.findPageByMember 로 페이징 조회
     @OneToMany(mappedBy = "member")
     private List<Order> orders = new ArrayList<>();
 }
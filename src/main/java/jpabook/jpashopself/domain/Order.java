@@ -1,8 +1,13 @@
 package jpabook.jpashopself.domain;
 
+import jpabook.jpashopself.domain.item.StockManager;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -10,19 +15,40 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "order_date, order_id"),
+        @Index(name = "idx_orders_status_order_date", columnList = "status, order_date"),
+        @Index(name = "idx_orders_member_order_date", columnList = "member_id, order_date"),
+        @Index(name = "idx_orders_total_price", columnList = "total_price")})
 @Getter @Setter
 public class Order {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "orders_seq")
+    @GenericGenerator(name = "orders_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "orders_seq"))
     @Column(name = "order_id")
     private Long id;
 
+    //주문이 바뀔 때마다 증가 (주문 JSON 조각 캐시의 키)
+    @Version
+    private Long version;
+
+    @Column(name = "order_date")
     private LocalDateTime orderDate;  //주문 시간
 
     @Enumerated(EnumType.STRING)
     private OrderStatus status;  //주문상태 [ORDER, CANCEL]
 
+    //주문상품을 읽지 않고 목록/정렬에 쓰도록 주문상품 추가때 같이 계산해서 저장한다
+    @Setter(AccessLevel.NONE)
+    @Column(name = "total_price")
+    private int totalPrice;  //주문 가격 합계 (주문가격 * 수량)
+
+    @Setter(AccessLevel.NONE)
+    @Column(name = "item_count")
+    private int itemCount;  //주문 수량 합계
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "member_id")
     private Member member;
@@ -35,14 +61,24 @@ public class Order {
     private List<OrderItem> orderItems = new ArrayList<>();
 
     //==연관관계 메서드==//
+
+    /**
+     * 회원의 주문 목록(member.orders)은 이미 읽은 경우에만 같이 맞춘다.
+     * 주문할때마다 회원의 주문 전체를 읽지 않도록 아직 읽지 않은 컬렉션은 건드리지 않는다.
+     * 연관관계의 주인은 Order.member 이므로 DB 에는 그대로 반영되고, 회원의 주문 이력은 OrderRepository.findPageByMember 로 조회한다.
+     */
     public void setMember(Member member) {
         this.member = member;
-        member.getOrders().add(this);
+        if (Hibernate.isInitialized(member.getOrders())) {
+            member.getOrders().add(this);
+        }
     }
 
     public void addOrderItem(OrderItem orderItem) {
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        totalPrice += orderItem.getTotalPrice();
+        itemCount += orderItem.getCount();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -69,28 +105,16 @@ public class Order {
 
     /**
      * 주문 취소
+     * 주문상품은 그대로 남으므로 주문 가격 합계, 수량 합계는 바뀌지 않는다.
      */
-    public void cancel() {
+    public void cancel(StockManager stockManager) {
         if (delivery.getStatus() == DeliveryStatus.COMP) {
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
 
         this.setStatus(OrderStatus.CANCEL);
         for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
-    }
-
-    //==조회 로직==//
-
-    /**
-     * 전체 주문 가격 조회
-     */
-    public int getTotalPrice() {
-        int totalPrice = 0;
-        for (OrderItem orderItem : orderItems) {
-            totalPrice += orderItem.getTotalPrice();
+            orderItem.cancel(stockManager);
         }
-        return totalPrice;
     }
 }
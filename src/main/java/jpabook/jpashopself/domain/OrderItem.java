@@ -2,10 +2,13 @@ package jpabook.jpashopself.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -15,7 +18,10 @@ import javax.persistence.*;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class OrderItem {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "order_item_seq")
+    @GenericGenerator(name = "order_item_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "order_item_seq"))
     @Column(name = "order_item_id")
     private Long id;
 
@@ -33,13 +39,13 @@ public class OrderItem {
 
     //==생성 메서드==//
 
-    public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
+    public static OrderItem createOrderItem(Item item, int orderPrice, int count, StockManager stockManager) {
         OrderItem orderItem = new OrderItem();
         orderItem.setItem(item);
         orderItem.setCount(count);
         orderItem.setOrderPrice(orderPrice);
 
-        item.removeStock(count);
+        stockManager.removeStock(item, count);
         return orderItem;
     }
 
@@ -48,8 +54,8 @@ public class OrderItem {
     /**
      * 주문 취소
      */
-    public void cancel() {
-        getItem().addStock(count);
+    public void cancel(StockManager stockManager) {
+        stockManager.addStock(getItem(), count);
     }
 
     //==조회 로직==//
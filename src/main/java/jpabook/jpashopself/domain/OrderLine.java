@@ -0,0 +1,18 @@
+package jpabook.jpashopself.domain;
+
+import lombok.Getter;
+
+/**
+ * 장바구니 주문의 한 줄 (상품, 수량)
+ */
+@Getter
+public class OrderLine {
+
+    private final Long itemId;
+    private final int count;
+
+    public OrderLine(Long itemId, int count) {
+        this.itemId = itemId;
+        this.count = count;
+    }
+}
@@ -2,9 +2,11 @@ package jpabook.jpashopself.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import java.time.LocalDate;
 
 @Getter @Setter
 public class OrderSearch {
@@ -13,4 +15,18 @@ public class OrderSearch {
 
     @Enumerated(EnumType.STRING)
     private OrderStatus orderStatus;
+
+    //주문일 범위 (둘 다 포함)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate fromDate;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate toDate;
+
+    //주문 가격 합계 범위 (둘 다 포함)
+    private Integer minTotalPrice;
+    private Integer maxTotalPrice;
+
+    private OrderSort sort = OrderSort.ORDER_DATE_DESC;
+    private int page;       //0 부터
+    private int size = 20;
 }
@@ -0,0 +1,8 @@
+package jpabook.jpashopself.domain;
+
+/**
+ * 주문 검색 정렬 (주문시간, 주문 가격이 같으면 주문 id 순)
+ */
+public enum OrderSort {
+    ORDER_DATE_DESC, ORDER_DATE_ASC, TOTAL_PRICE_DESC, TOTAL_PRICE_ASC
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashopself.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 요약 (간단 주문 조회용 읽기 모델)
+ * 주문 목록 화면에 필요한 회원 이름, 배송지를 주문 한 row 에 복사해 둔다. orders, member, delivery 조인 없이 이 테이블만 읽는다.
+ * OrderSummaryRepository 가 주문/취소/회원 이름 변경때 같은 트랜잭션에서 갱신한다.
+ */
+@Entity
+@Table(name = "order_summary", indexes = @Index(name = "idx_order_summary_member_id", columnList = "member_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @Column(name = "member_name")
+    private String memberName;
+
+    @Column(name = "order_date")
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Column(name = "total_price")
+    private int totalPrice;
+
+    @Column(name = "item_count")
+    private int itemCount;
+
+    @Embedded
+    private Address address;
+
+    //==생성 메서드==//
+    public static OrderSummary createSummary(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.orderId = order.getId();
+        summary.memberId = order.getMember().getId();
+        summary.memberName = order.getMember().getName();
+        summary.orderDate = order.getOrderDate();
+        summary.status = order.getStatus();
+        summary.totalPrice = order.getTotalPrice();
+        summary.itemCount = order.getItemCount();
+        summary.address = order.getDelivery().getAddress();
+        return summary;
+    }
+}
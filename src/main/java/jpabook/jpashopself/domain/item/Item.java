@@ -4,23 +4,39 @@ import jpabook.jpashopself.domain.Category;
 import jpabook.jpashopself.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * 2차 캐시: Book, Album, Movie 도 Item region 하나에 같이 캐시된다. (ehcache.xml)
+ * 재고는 StockManager 가 jdbc 로 바꾸고 바꾼 상품만 캐시에서 지운다.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
 @Getter @Setter
 public abstract class Item {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "item_seq")
+    @GenericGenerator(name = "item_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "item_seq"))
     @Column(name = "item_id")
     private Long id;
 
     private String name;
     private int price;
+
+    //재고는 StockManager 의 조건부 update 로만 반영한다. (변경감지로 덮어쓰지 않음)
+    @Column(updatable = false)
     private int stockQuantity;
 
     @ManyToMany(mappedBy = "items")
@@ -32,7 +48,7 @@ public abstract class Item {
     }
 
     public void removeStock(int quantity) {
-        int restStock = this.stockQuantity -= quantity;
+        int restStock = this.stockQuantity - quantity;
         if (restStock < 0) {
             throw new NotEnoughStockException("need more stock");
         }
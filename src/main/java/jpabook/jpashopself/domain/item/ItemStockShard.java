@@ -0,0 +1,47 @@
+package jpabook.jpashopself.domain.item;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+
+/**
+ * 상품 재고 샤드
+ * 한 상품의 재고를 N개의 row 로 나눠서 동시 차감이 한 row 에 몰리지 않게 한다.
+ * 상품의 재고는 샤드 수량의 합이다.
+ */
+@Entity
+@Table(name = "item_stock_shard",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"item_id", "shard_no"}))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ItemStockShard {
+
+    @Id
+    @GeneratedValue(generator = "item_stock_shard_seq")
+    @GenericGenerator(name = "item_stock_shard_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "item_stock_shard_seq"))
+    @Column(name = "item_stock_shard_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @Column(name = "shard_no")
+    private int shardNo;
+
+    private int quantity;
+
+    //==생성 메서드==//
+    public static ItemStockShard createShard(Item item, int shardNo, int quantity) {
+        ItemStockShard shard = new ItemStockShard();
+        shard.item = item;
+        shard.shardNo = shardNo;
+        shard.quantity = quantity;
+        return shard;
+    }
+}
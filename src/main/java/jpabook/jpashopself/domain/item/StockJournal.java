@@ -0,0 +1,42 @@
+package jpabook.jpashopself.domain.item;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+
+/**
+ * 아직 item 에 반영하지 않은 재고 변화량 (재고 원장 모드)
+ * 주문/취소 트랜잭션에서 같이 insert 하므로 커밋된 재고 변경은 모두 DB 에 남는다.
+ * 상품 재고는 item.stock_quantity + 이 테이블의 변화량 합이다.
+ */
+@Entity
+@Table(name = "stock_journal", indexes = @Index(name = "idx_stock_journal_item", columnList = "item_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class StockJournal {
+
+    @Id
+    @GeneratedValue(generator = "stock_journal_seq")
+    @GenericGenerator(name = "stock_journal_seq", strategy = "jpabook.jpashopself.domain.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "stock_journal_seq"))
+    @Column(name = "stock_journal_id")
+    private Long id;
+
+    //상품을 읽지 않도록 연관관계 대신 id 만 둔다
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private int delta;
+
+    //==생성 메서드==//
+    public static StockJournal createJournal(Long itemId, int delta) {
+        StockJournal journal = new StockJournal();
+        journal.itemId = itemId;
+        journal.delta = delta;
+        return journal;
+    }
+}
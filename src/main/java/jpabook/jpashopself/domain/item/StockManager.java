@@ -0,0 +1,49 @@
+package jpabook.jpashopself.domain.item;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 재고 변경
+ * 재고는 변경감지(read-modify-write)로 반영하지 않고, 구현체가 DB에 원자적으로 반영한다.
+ * 동시에 같은 상품을 주문해도 재고를 읽고 쓰는 사이에 끼어드는 갱신 분실(lost update)이 생기지 않는다.
+ */
+public interface StockManager {
+
+    /**
+     * 재고 감소
+     * 재고가 부족하면 NotEnoughStockException 이 발생하고 재고는 변하지 않는다.
+     */
+    void removeStock(Item item, int quantity);
+
+    /**
+     * 재고 증가
+     */
+    void addStock(Item item, int quantity);
+
+    /**
+     * 여러 상품 재고 한번에 증가 (상품 id -> 수량)
+     * 주문 일괄 취소처럼 상품별로 모은 수량을 set 단위로 반영한다. 영속성 컨텍스트의 엔티티에는 반영되지 않는다.
+     */
+    void addStocks(Map<Long, Integer> quantities);
+
+    /**
+     * 재고 수량 변경 (상품 수정)
+     */
+    void changeStock(Item item, int stockQuantity);
+
+    /**
+     * 조회한 상품에 실제 재고를 채운다.
+     * item 테이블 밖에서 재고를 관리하는 구현체(원장, 샤딩)만 재정의한다.
+     */
+    default void refreshStock(List<? extends Item> items) {
+    }
+
+    /**
+     * 여러 주문을 트랜잭션 하나로 처리할때 (그룹 커밋) 재고 차감 전에 상품 재고를 item id 순서로 잠근다.
+     * 재고 row 를 차감하면서 잠그는 구현체(ItemRepository)만 재정의한다. 원장, 샤딩은 item row 를 잠그지 않는다.
+     */
+    default void lockStocks(Collection<Long> itemIds) {
+    }
+}
@@ -0,0 +1,26 @@
+package jpabook.jpashopself.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 같은 Idempotency-Key 의 요청이 다른 서버에서 처리 중일때
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class DuplicateRequestException extends RuntimeException {
+
+    public DuplicateRequestException() {
+    }
+
+    public DuplicateRequestException(String message) {
+        super(message);
+    }
+
+    public DuplicateRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DuplicateRequestException(Throwable cause) {
+        super(cause);
+    }
+}
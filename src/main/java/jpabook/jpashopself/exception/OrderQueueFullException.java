@@ -0,0 +1,19 @@
+package jpabook.jpashopself.exception;
+
+public class OrderQueueFullException extends RuntimeException {
+
+    public OrderQueueFullException() {
+    }
+
+    public OrderQueueFullException(String message) {
+        super(message);
+    }
+
+    public OrderQueueFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public OrderQueueFullException(Throwable cause) {
+        super(cause);
+    }
+}
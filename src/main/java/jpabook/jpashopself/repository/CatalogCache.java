@@ -0,0 +1,152 @@
+package jpabook.jpashopself.repository;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 상품 목록 캐시 (상품 목록 화면, 주문 폼)
+ * 화면을 열 때마다 전체 상품 엔티티를 읽지 않고, 읽어둔 상품 스냅샷 목록을 같이 쓴다.
+ *
+ * - 상품 등록: 트랜잭션이 끝나면 목록 전체를 버린다. (invalidateAll)
+ * - 상품 수정, 재고 변경: 트랜잭션이 끝나면 그 상품만 표시해두고 다음 조회때 그 상품만 다시 읽는다. (invalidate)
+ *   주문마다 재고가 바뀌어도 전체 목록을 다시 읽지 않는다.
+ * - 캐시가 비었을 때 동시에 들어온 요청은 한 스레드만 DB 를 읽고 나머지는 그 결과를 기다린다. (single-flight)
+ * - 읽는 중에 목록 전체가 무효화되면 읽은 결과는 그 요청에만 쓰고 캐시에 두지 않는다.
+ */
+@Component
+public class CatalogCache {
+
+    //상품 id 순서의 스냅샷 목록 (읽기 전용). null 이면 전체를 다시 읽는다.
+    private volatile List<ItemSnapshot> snapshots;
+    //다시 읽어야 하는 상품 id
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+    //invalidateAll 마다 증가
+    private final AtomicLong generation = new AtomicLong();
+    private final Object loadLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+
+    /**
+     * @param loadAll   전체 상품 스냅샷 조회
+     * @param loadByIds 일부 상품 스냅샷 조회 (없어진 상품은 빠진다)
+     */
+    public List<ItemSnapshot> get(Supplier<List<ItemSnapshot>> loadAll,
+                                  Function<Collection<Long>, List<ItemSnapshot>> loadByIds) {
+        List<ItemSnapshot> current = snapshots;
+        if (current != null && dirtyIds.isEmpty()) {
+            hits.increment();
+            return current;
+        }
+
+        synchronized (loadLock) {
+            current = snapshots;
+            if (current != null && dirtyIds.isEmpty()) {
+                hits.increment(); //기다리는 동안 다른 스레드가 읽어둔 목록
+                return current;
+            }
+
+            long gen = generation.get();
+            long begin = System.nanoTime();
+            List<ItemSnapshot> loaded = current == null ? loadAll(loadAll) : refresh(current, loadByIds);
+            recordLoad(System.nanoTime() - begin);
+
+            if (generation.get() == gen) {
+                snapshots = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * 상품 등록 - 트랜잭션이 끝나면 목록 전체를 버린다.
+     */
+    public void invalidateAll() {
+        TransactionCallbacks.afterCompletion(this::clear, this::clear);
+    }
+
+    /**
+     * 상품 수정, 재고 변경 - 트랜잭션이 끝나면 해당 상품만 다시 읽도록 표시한다.
+     */
+    public void invalidate(Collection<Long> itemIds) {
+        List<Long> ids = new ArrayList<>(itemIds);
+        Runnable mark = () -> dirtyIds.addAll(ids);
+        TransactionCallbacks.afterCompletion(mark, mark);
+    }
+
+    public CatalogCacheMetrics metrics() {
+        List<ItemSnapshot> current = snapshots;
+        long loads = misses.sum() + refreshes.sum();
+        return new CatalogCacheMetrics(
+                current == null ? 0 : current.size(),
+                hits.sum(),
+                misses.sum(),
+                refreshes.sum(),
+                loads == 0 ? 0 : loadNanos.sum() / 1_000_000.0 / loads,
+                maxLoadNanos.get() / 1_000_000.0);
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        snapshots = null;
+    }
+
+    private List<ItemSnapshot> loadAll(Supplier<List<ItemSnapshot>> loadAll) {
+        misses.increment();
+        //읽기 시작한 뒤에 바뀐 상품은 다시 표시되므로 지금까지의 표시만 지운다
+        dirtyIds.clear();
+        return sorted(toMap(loadAll.get()));
+    }
+
+    private List<ItemSnapshot> refresh(List<ItemSnapshot> current,
+                                       Function<Collection<Long>, List<ItemSnapshot>> loadByIds) {
+        refreshes.increment();
+        List<Long> ids = new ArrayList<>(dirtyIds);
+        dirtyIds.removeAll(ids);
+
+        List<ItemSnapshot> changed;
+        try {
+            changed = loadByIds.apply(ids);
+        } catch (RuntimeException e) {
+            dirtyIds.addAll(ids);
+            throw e;
+        }
+
+        Map<Long, ItemSnapshot> next = toMap(current);
+        ids.forEach(next::remove);
+        next.putAll(toMap(changed));
+        return sorted(next);
+    }
+
+    private void recordLoad(long nanos) {
+        loadNanos.add(nanos);
+        maxLoadNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static Map<Long, ItemSnapshot> toMap(List<ItemSnapshot> snapshots) {
+        Map<Long, ItemSnapshot> map = new TreeMap<>();
+        for (ItemSnapshot snapshot : snapshots) {
+            map.put(snapshot.getId(), snapshot);
+        }
+        return map;
+    }
+
+    private static List<ItemSnapshot> sorted(Map<Long, ItemSnapshot> byId) {
+        return Collections.unmodifiableList(new ArrayList<>(byId.values()));
+    }
+}
@@ -0,0 +1,22 @@
+package jpabook.jpashopself.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 상품 목록 캐시 현황
+ * - misses: 전체 상품을 다시 읽은 횟수
+ * - refreshes: 바뀐 상품만 다시 읽은 횟수
+ * 읽는 시간은 전체/일부 읽기를 모두 합친 것이다.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogCacheMetrics {
+
+    private int size;
+    private long hits;
+    private long misses;
+    private long refreshes;
+    private double avgLoadMillis;
+    private double maxLoadMillis;
+}
@@ -0,0 +1,40 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * 임대가 끝난 처리 중 키를 넘겨받는다. (넘겨받았으면 1)
+     */
+    @Modifying
+    @Query("update IdempotencyKey k set k.claimToken = :claimToken, k.leaseExpiresAt = :leaseExpiresAt" +
+            " where k.key = :key and k.resultId is null and k.leaseExpiresAt < :now")
+    int takeOver(@Param("key") String key, @Param("claimToken") String claimToken,
+                 @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt, @Param("now") LocalDateTime now);
+
+    /**
+     * 결과 기록. 다른 요청이 키를 넘겨받았으면 0
+     */
+    @Modifying
+    @Query("update IdempotencyKey k set k.resultId = :resultId" +
+            " where k.key = :key and k.claimToken = :claimToken and k.resultId is null")
+    int complete(@Param("key") String key, @Param("claimToken") String claimToken, @Param("resultId") Long resultId);
+
+    /**
+     * 처리에 실패한 키를 지워서 다시 시도할 수 있게 한다. 다른 요청이 넘겨받은 키는 지우지 않는다.
+     */
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.claimToken = :claimToken and k.resultId is null")
+    int release(@Param("key") String key, @Param("claimToken") String claimToken);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :createdAt")
+    int deleteCreatedBefore(@Param("createdAt") LocalDateTime createdAt);
+}
@@ -1,17 +1,35 @@
 package jpabook.jpashopself.repository;
 
 import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.exception.NotEnoughStockException;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
-public class ItemRepository {
+public class ItemRepository implements StockManager {
 
     private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogCache catalogCache;
 
     //상품 등록
     public void save(Item item) {
@@ -26,10 +44,141 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    //여러 상품 한번에 조회
+    public List<Item> findAllById(Collection<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * 상품 row 를 item id 순서로 잠근다.
+     * 여러 주문을 트랜잭션 하나로 처리할때 (그룹 커밋) 재고 차감 전에 잠가서 다른 트랜잭션과 lock 순서를 맞춘다.
+     */
+    public List<Item> lockAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
     //상풍 목록 조회
     public List<Item> findAll() {
         return em.createQuery("select i from Item i", Item.class)
                 .getResultList();
     }
+
+    /**
+     * 재고 감소
+     * 재고를 읽어서 빼고 다시 쓰는 대신 "stock >= n" 조건부 update 한번으로 처리한다.
+     * 수정된 row 가 없으면 재고 부족이다.
+     *
+     * 재고 update 는 HQL 대신 jdbc 로 실행한다. HQL bulk update 는 2차 캐시의 Item region 전체를 비우므로
+     * 주문 한건마다 모든 상품 캐시가 사라진다. jdbc update 후에 해당 상품만 캐시에서 지운다. (evict)
+     */
+    @Override
+    public void lockStocks(Collection<Long> itemIds) {
+        lockAll(itemIds);
+    }
+
+    @Override
+    public void removeStock(Item item, int quantity) {
+        flushIfNotInserted(item);
+        int updated = jdbcTemplate.update(
+                "update item set stock_quantity = stock_quantity - ? where item_id = ? and stock_quantity >= ?",
+                quantity, item.getId(), quantity);
+
+        if (updated == 0) {
+            throw new NotEnoughStockException("need more stock");
+        }
+        evict(Collections.singletonList(item.getId()));
+        syncStock(item, -quantity);
+    }
+
+    /**
+     * 재고 증가
+     */
+    @Override
+    public void addStock(Item item, int quantity) {
+        flushIfNotInserted(item);
+        jdbcTemplate.update("update item set stock_quantity = stock_quantity + ? where item_id = ?",
+                quantity, item.getId());
+
+        evict(Collections.singletonList(item.getId()));
+        syncStock(item, quantity);
+    }
+
+    @Override
+    public void changeStock(Item item, int stockQuantity) {
+        flushIfNotInserted(item);
+        jdbcTemplate.update("update item set stock_quantity = ? where item_id = ?",
+                stockQuantity, item.getId());
+
+        evict(Collections.singletonList(item.getId()));
+        item.setStockQuantity(stockQuantity);
+    }
+
+    /**
+     * 상품별 재고 변화량을 jdbc batch 한번으로 반영
+     * item id 순서로 update 해서 동시에 실행되는 다른 batch 와 lock 순서가 엇갈리지 않게 한다.
+     * 영속성 컨텍스트의 엔티티에는 반영되지 않는다.
+     */
+    @Override
+    public void addStocks(Map<Long, Integer> quantities) {
+        List<Object[]> args = new TreeMap<>(quantities).entrySet().stream()
+                .map(e -> new Object[]{e.getValue(), e.getKey()})
+                .collect(Collectors.toList());
+
+        jdbcTemplate.batchUpdate("update item set stock_quantity = stock_quantity + ? where item_id = ?", args);
+        evict(quantities.keySet());
+    }
+
+    /**
+     * 같은 트랜잭션에서 persist 만 하고 아직 insert 되지 않은 상품이면 jdbc update 전에 flush 한다.
+     * 이미 DB 에 있는 상품이면 flush 하지 않는다. 주문마다 flush 하면 장바구니/대량 주문의 insert 가
+     * 주문 한건씩 따로 나가서 jdbc batch 로 묶이지 않는다.
+     */
+    private void flushIfNotInserted(Item item) {
+        Object entity = item;
+        if (item instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) item).getHibernateLazyInitializer();
+            if (initializer.isUninitialized()) {
+                return; //프록시는 DB 에 있는 상품만 만들어진다
+            }
+            entity = initializer.getImplementation();
+        }
+
+        EntityEntry entry = em.unwrap(SessionImplementor.class).getPersistenceContext().getEntry(entity);
+        if (entry != null && !entry.isExistsInDatabase()) {
+            em.flush();
+        }
+    }
+
+    /**
+     * 재고를 바꾼 상품을 2차 캐시에서 지우고, 상품 목록 캐시에서는 다시 읽도록 표시한다.
+     * stockQuantity 는 updatable = false 라서 hibernate 가 캐시의 재고를 갱신하지 않는다.
+     * 지금 한번 지우고, 트랜잭션이 끝난 뒤 한번 더 지워서 그 사이에 다른 트랜잭션이 커밋 전 재고를 캐시에 다시 올려도 남지 않게 한다.
+     */
+    private void evict(Collection<Long> itemIds) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        List<Long> ids = new ArrayList<>(itemIds);
+        Runnable evict = () -> ids.forEach(id -> cache.evict(Item.class, id));
+        evict.run();
+        TransactionCallbacks.afterCompletion(evict, evict);
+        catalogCache.invalidate(ids);
+    }
+
+    /**
+     * DB에 반영한 재고 변경을 영속성 컨텍스트의 엔티티에도 맞춰준다.
+     * 초기화되지 않은 프록시는 재고를 읽으려고 select 하지 않도록 건너뛴다.
+     */
+    private void syncStock(Item item, int delta) {
+        if (Hibernate.isInitialized(item)) {
+            item.setStockQuantity(item.getStockQuantity() + delta);
+        }
+    }
 }
 
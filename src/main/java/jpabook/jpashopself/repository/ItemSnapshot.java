@@ -0,0 +1,32 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.item.Item;
+import lombok.Getter;
+import org.hibernate.Hibernate;
+
+/**
+ * 상품 목록 화면에 보여줄 상품 값 (CatalogCache)
+ * 엔티티가 아니라서 여러 요청이 같은 객체를 같이 써도 된다.
+ */
+@Getter
+public class ItemSnapshot {
+
+    private final Long id;
+    private final String type;  //Book, Album, Movie
+    private final String name;
+    private final int price;
+    private final int stockQuantity;
+
+    private ItemSnapshot(Long id, String type, String name, int price, int stockQuantity) {
+        this.id = id;
+        this.type = type;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+
+    public static ItemSnapshot of(Item item) {
+        return new ItemSnapshot(item.getId(), Hibernate.getClass(item).getSimpleName(),
+                item.getName(), item.getPrice(), item.getStockQuantity());
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashopself.repository;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+/**
+ * 스프링 부트가 만드는 EntityManagerFactory 의 JpaDialect 를 ReadOnlySessionJpaDialect 로 바꾼다.
+ * JpaTransactionManager 는 초기화할 때 EntityManagerFactory 의 JpaDialect 를 가져다 쓰므로
+ * 트랜잭션 매니저가 아니라 EntityManagerFactory 쪽에 설정한다.
+ */
+@Configuration
+public class JpaConfig {
+
+    @Bean
+    public static BeanPostProcessor readOnlySessionJpaDialectPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean) {
+                    ((AbstractEntityManagerFactoryBean) bean).setJpaDialect(new ReadOnlySessionJpaDialect());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+package jpabook.jpashopself.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 회원 이름 trigram 인덱스 (주문 검색의 회원 이름 부분 검색)
+ * "name like '%검색어%'" 는 인덱스를 못 타서 검색할 때마다 member 테이블 전체를 읽는다.
+ * 이름을 3글자씩 잘라서 (trigram -> 회원 id) 로 메모리에 두고, 검색어의 trigram 이 모두 들어있는 회원만 후보로 고른다.
+ *
+ * - 처음 검색하거나 이름을 등록할 때 DB 의 회원 이름(커밋된 값)으로 채운다.
+ * - MemberService 의 가입/수정은 바로 반영하고, 트랜잭션이 롤백되면 되돌린다. (put)
+ * - 대소문자는 구분하지 않는다. 3글자 미만 검색어는 이름 전체를 확인한다.
+ * - JVM 메모리에 있으므로 다른 서버에서 바뀐 이름은 재시작 전까지 반영되지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberNameIndex {
+
+    private static final int GRAM = 3;
+
+    private final EntityManager em;
+    private final TransactionTemplate loadTransaction;
+
+    //trigram -> 회원 id
+    private final Map<String, Set<Long>> grams = new ConcurrentHashMap<>();
+    //회원 id -> 이름 (소문자)
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public MemberNameIndex(EntityManager em, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 회원 이름 등록/변경
+     * 같은 트랜잭션의 주문 검색에서도 보이도록 바로 반영하고, 롤백되면 트랜잭션 시작 전 이름으로 되돌린다.
+     * 한 트랜잭션에서 같은 회원을 여러번 바꿔도 되돌릴 이름은 처음 바꾸기 전 이름 하나만 기억한다.
+     * 인덱스를 채우기 전이면 먼저 채운다. (채우기 전에 바꾸면 되돌릴 이름을 몰라서 롤백해도 바뀐 이름이 남는다)
+     */
+    public void put(Long memberId, String name) {
+        ensureLoaded();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            index(memberId, name);
+            return;
+        }
+        Rollback rollback = currentRollback();
+        String previous = index(memberId, name);
+        rollback.originals.putIfAbsent(memberId, Optional.ofNullable(previous));
+    }
+
+    /**
+     * 현재 트랜잭션의 되돌리기 정보. 트랜잭션마다 하나만 등록한다.
+     * (REQUIRES_NEW 로 중단된 바깥 트랜잭션의 것은 getSynchronizations 에 보이지 않는다)
+     */
+    private Rollback currentRollback() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Rollback && ((Rollback) synchronization).owner() == this) {
+                return (Rollback) synchronization;
+            }
+        }
+        Rollback rollback = new Rollback();
+        TransactionSynchronizationManager.registerSynchronization(rollback);
+        return rollback;
+    }
+
+    private void restore(Long memberId, Optional<String> original) {
+        if (original.isPresent()) {
+            index(memberId, original.get());
+        } else {
+            remove(memberId);
+        }
+    }
+
+    /**
+     * 이름에 keyword 가 들어있는 회원 id
+     */
+    public Set<Long> search(String keyword) {
+        ensureLoaded();
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Long> candidates = query.length() < GRAM ? names.keySet() : candidates(query);
+        Set<Long> result = new HashSet<>();
+        for (Long memberId : candidates) {
+            String name = names.get(memberId);
+            if (name != null && name.contains(query)) {
+                result.add(memberId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 검색어 trigram 중 회원이 가장 적은 trigram 의 회원 목록
+     * 나머지 trigram 은 따로 교집합을 구하지 않고 search 에서 이름에 검색어가 들어있는지로 확인한다.
+     */
+    private Set<Long> candidates(String query) {
+        Set<Long> smallest = null;
+        for (String gram : trigrams(query)) {
+            Set<Long> memberIds = grams.get(gram);
+            if (memberIds == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || memberIds.size() < smallest.size()) {
+                smallest = memberIds;
+            }
+        }
+        return smallest == null ? Collections.emptySet() : smallest;
+    }
+
+    /**
+     * @return 이전 이름 (소문자), 없었으면 null
+     */
+    private synchronized String index(Long memberId, String name) {
+        String previous = remove(memberId);
+        String normalized = normalize(name);
+        names.put(memberId, normalized);
+        for (String gram : trigrams(normalized)) {
+            grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(memberId);
+        }
+        return previous;
+    }
+
+    private synchronized String remove(Long memberId) {
+        String previous = names.remove(memberId);
+        if (previous != null) {
+            for (String gram : trigrams(previous)) {
+                Set<Long> memberIds = grams.get(gram);
+                if (memberIds != null) {
+                    memberIds.remove(memberId);
+                }
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * 별도 읽기 전용 트랜잭션에서 커밋된 이름만 읽는다.
+     * 호출한 트랜잭션에서 바꾸고 아직 커밋하지 않은 이름을 읽으면 그 이름이 되돌릴 이름이 되어 버린다.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            List<Object[]> members = loadTransaction.execute(status ->
+                    em.createQuery("select m.id, m.name from Member m", Object[].class).getResultList());
+            for (Object[] member : members) {
+                //로딩 중에 먼저 반영된 변경은 덮어쓰지 않는다
+                if (!names.containsKey((Long) member[0])) {
+                    index((Long) member[0], (String) member[1]);
+                }
+            }
+            loaded = true;
+            log.info("회원 이름 인덱스 로딩 완료. members={}, grams={}", names.size(), grams.size());
+        }
+    }
+
+    /**
+     * 롤백되면 트랜잭션에서 바꾼 회원을 처음 이름으로 되돌린다.
+     */
+    private class Rollback implements TransactionSynchronization {
+
+        //회원 id -> 트랜잭션 시작 전 이름 (없던 회원이면 empty)
+        private final Map<Long, Optional<String>> originals = new HashMap<>();
+
+        MemberNameIndex owner() {
+            return MemberNameIndex.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+                originals.forEach(MemberNameIndex.this::restore);
+            }
+        }
+    }
+
+    private static Set<String> trigrams(String name) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            result.add(name.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.replace("%", "").trim().toLowerCase();
+    }
+}
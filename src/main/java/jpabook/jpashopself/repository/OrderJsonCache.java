@@ -0,0 +1,176 @@
+package jpabook.jpashopself.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashopself.repository.order.query.OrderQueryDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 주문 JSON 조각 캐시 (주문 조회 v4, v5)
+ * 주문 DTO 를 json 으로 직렬화한 byte[] 를 (주문 id, 주문 버전) 으로 보관한다.
+ * 응답은 조각을 이어 붙여서 바로 쓰므로 캐시에 있는 주문은 DTO 조회와 직렬화를 하지 않는다.
+ *
+ * - 주문이 바뀌면(@Version) 버전이 달라져서 이전 조각은 쓰지 않는다.
+ * - 주문 버전이 바뀌지 않는 변경(회원 이름, 상품 이름)은 evict/clear 로 지운다. 지금 한번, 트랜잭션이 끝난 뒤 한번 더 지운다.
+ * - 조각을 만드는 중에 evict 가 있었으면 만든 조각은 그 응답에만 쓰고 캐시에 넣지 않는다.
+ * - 전체 크기가 max-bytes 를 넘으면 가장 오래 안 쓴 조각부터 지운다. (LRU)
+ */
+@Component
+public class OrderJsonCache {
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+
+    //접근 순서 LinkedHashMap (LRU)
+    private final LinkedHashMap<Long, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    //evict/clear 마다 증가
+    private final AtomicLong generation = new AtomicLong();
+
+    public OrderJsonCache(ObjectMapper objectMapper,
+                          @Value("${jpashop.order.json-cache.max-bytes:67108864}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 주문 json 조각 조회
+     *
+     * @param versions 주문 id -> 버전 (응답 순서)
+     * @param loader   캐시에 없는 주문의 DTO 조회
+     * @return versions 순서의 json 조각 (그 사이에 없어진 주문은 빠진다)
+     */
+    public List<byte[]> get(Map<Long, Long> versions, Function<List<Long>, List<OrderQueryDto>> loader) {
+        long gen = generation.get();
+        byte[][] result = new byte[versions.size()][];
+        List<Long> missingIds = new ArrayList<>();
+        Map<Long, Integer> positions = new HashMap<>();
+
+        synchronized (this) {
+            int i = 0;
+            for (Map.Entry<Long, Long> entry : versions.entrySet()) {
+                Fragment fragment = fragments.get(entry.getKey());
+                if (fragment != null && Objects.equals(fragment.version, entry.getValue())) {
+                    result[i] = fragment.json;
+                    hits++;
+                } else {
+                    missingIds.add(entry.getKey());
+                    positions.put(entry.getKey(), i);
+                    misses++;
+                }
+                i++;
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (OrderQueryDto order : loader.apply(missingIds)) {
+                byte[] json = serialize(order);
+                result[positions.get(order.getOrderId())] = json;
+                put(order.getOrderId(), versions.get(order.getOrderId()), json, gen);
+            }
+        }
+
+        List<byte[]> jsons = new ArrayList<>(result.length);
+        Arrays.stream(result)
+                .filter(Objects::nonNull)
+                .forEach(jsons::add);
+        return jsons;
+    }
+
+    /**
+     * 주문 조각 제거 (회원 이름 변경, 주문 취소 등)
+     */
+    public void evict(Collection<Long> orderIds) {
+        List<Long> ids = new ArrayList<>(orderIds);
+        Runnable evict = () -> remove(ids);
+        evict.run();
+        TransactionCallbacks.afterCompletion(evict, evict);
+    }
+
+    /**
+     * 전체 제거 (상품 이름 변경처럼 어느 주문에 들어있는지 모를 때)
+     */
+    public void clear() {
+        Runnable clear = () -> {
+            generation.incrementAndGet();
+            synchronized (this) {
+                fragments.clear();
+                bytes = 0;
+            }
+        };
+        clear.run();
+        TransactionCallbacks.afterCompletion(clear, clear);
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private void remove(List<Long> orderIds) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            for (Long orderId : orderIds) {
+                Fragment removed = fragments.remove(orderId);
+                if (removed != null) {
+                    bytes -= removed.json.length;
+                }
+            }
+        }
+    }
+
+    private synchronized void put(Long orderId, Long version, byte[] json, long gen) {
+        if (generation.get() != gen || json.length > maxBytes) {
+            return;
+        }
+        Fragment previous = fragments.put(orderId, new Fragment(version, json));
+        bytes += json.length - (previous == null ? 0 : previous.json.length);
+
+        Iterator<Fragment> eldest = fragments.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().json.length;
+            eldest.remove();
+        }
+    }
+
+    private byte[] serialize(OrderQueryDto order) {
+        try {
+            return objectMapper.writeValueAsBytes(order);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Fragment {
+        private final Long version;
+        private final byte[] json;
+
+        Fragment(Long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
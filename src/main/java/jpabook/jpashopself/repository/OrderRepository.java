@@ -1,23 +1,42 @@
 package jpabook.jpashopself.repository;
 
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jpabook.jpashopself.domain.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderRepository {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_MEMBER_CANDIDATES = 1000;
+
     private final EntityManager em;
+    private final MemberNameIndex memberNameIndex;
 
     //상품 주문
     public void save(Order order) {
@@ -82,18 +101,233 @@ public class OrderRepository {
         return query.select(order)
                 .from(order)
                 .join(order.member, member)
-                .where(statusEq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()))
+                .where(searchConditions(orderSearch))
                 .limit(1000)
                 .fetch();
     }
 
-    private BooleanExpression nameLike(String memberName) {
+    /**
+     * 주문 검색 페이징
+     * - 조건별로 인덱스를 탄다. 주문상태: idx_orders_status_order_date, 회원: idx_orders_member_order_date,
+     *   주문일만: idx_orders_order_date_id
+     * - 전체 건수는 별도 count 쿼리로 구한다. 회원 이름은 회원 id 조건으로 바뀌므로 member 조인을 하지 않는다.
+     *   첫 페이지가 size 보다 적거나 마지막 페이지면 count 쿼리를 생략한다.
+     */
+    public Page<Order> findPage(OrderSearch orderSearch) {
+        JPAQueryFactory query = new JPAQueryFactory(em);
+        Pageable pageable = PageRequest.of(Math.max(0, orderSearch.getPage()),
+                Math.max(1, Math.min(orderSearch.getSize(), MAX_PAGE_SIZE)));
+
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+
+        List<Order> content = query.selectFrom(order)
+                .join(order.member, member).fetchJoin()
+                .where(searchConditions(orderSearch))
+                .orderBy(orderBy(orderSearch.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(orderSearch));
+    }
+
+    private long count(OrderSearch orderSearch) {
+        Long count = new JPAQueryFactory(em)
+                .select(QOrder.order.count())
+                .from(QOrder.order)
+                .where(searchConditions(orderSearch))
+                .fetchOne();
+        return count == null ? 0 : count;
+    }
+
+    private BooleanExpression[] searchConditions(OrderSearch orderSearch) {
+        return new BooleanExpression[]{
+                statusEq(orderSearch.getOrderStatus()),
+                memberNameContains(orderSearch.getMemberName()),
+                orderDateGoe(orderSearch.getFromDate()),
+                orderDateLoe(orderSearch.getToDate()),
+                totalPriceGoe(orderSearch.getMinTotalPrice()),
+                totalPriceLoe(orderSearch.getMaxTotalPrice())};
+    }
+
+    private OrderSpecifier<?>[] orderBy(OrderSort sort) {
+        if (sort == OrderSort.ORDER_DATE_ASC) {
+            return new OrderSpecifier<?>[]{QOrder.order.orderDate.asc(), QOrder.order.id.asc()};
+        }
+        if (sort == OrderSort.TOTAL_PRICE_DESC) {
+            return new OrderSpecifier<?>[]{QOrder.order.totalPrice.desc(), QOrder.order.id.desc()};
+        }
+        if (sort == OrderSort.TOTAL_PRICE_ASC) {
+            return new OrderSpecifier<?>[]{QOrder.order.totalPrice.asc(), QOrder.order.id.asc()};
+        }
+        return new OrderSpecifier<?>[]{QOrder.order.orderDate.desc(), QOrder.order.id.desc()};
+    }
+
+    /**
+     * 검색 조건에 맞는 주문 id 전체 조회 (일괄 취소 대상)
+     * 취소는 되돌릴 수 없으므로 회원 이름은 부분 검색이 아니라 입력한 이름 그대로 (like) 비교한다.
+     */
+    public List<Long> findIds(OrderSearch orderSearch) {
+        JPAQueryFactory query = new JPAQueryFactory(em);
+
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+
+        return query.select(order.id)
+                .from(order)
+                .join(order.member, member)
+                .where(statusEq(orderSearch.getOrderStatus()),
+                        memberNameLike(orderSearch.getMemberName()),
+                        orderDateGoe(orderSearch.getFromDate()),
+                        orderDateLoe(orderSearch.getToDate()),
+                        totalPriceGoe(orderSearch.getMinTotalPrice()),
+                        totalPriceLoe(orderSearch.getMaxTotalPrice()))
+                .orderBy(order.id.asc())
+                .fetch();
+    }
+
+    /**
+     * 회원의 주문 이력 페이징 (최근 주문부터, idx_orders_member_order_date)
+     * member.orders 컬렉션을 읽으면 주문 전체를 메모리에 올리므로 회원의 주문은 이걸로 조회한다.
+     */
+    public Page<Order> findPageByMember(Long memberId, int page, int size) {
+        JPAQueryFactory query = new JPAQueryFactory(em);
+        Pageable pageable = PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+
+        QOrder order = QOrder.order;
+
+        List<Order> content = query.selectFrom(order)
+                .join(order.member, QMember.member).fetchJoin()
+                .join(order.delivery, QDelivery.delivery).fetchJoin()
+                .where(order.member.id.eq(memberId))
+                .orderBy(order.orderDate.desc(), order.id.desc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long count = query.select(order.count())
+                    .from(order)
+                    .where(order.member.id.eq(memberId))
+                    .fetchOne();
+            return count == null ? 0 : count;
+        });
+    }
+
+    /**
+     * 회원의 주문 id 전체 조회 (idx_orders_member_order_date)
+     */
+    public List<Long> findIdsByMember(Long memberId) {
+        return em.createQuery("select o.id from Order o where o.member.id = :memberId", Long.class)
+                .setParameter("memberId", memberId)
+                .getResultList();
+    }
+
+    /**
+     * 취소 가능한 주문만 골라서 잠근다. (주문 상태이고 배송완료가 아닌 주문)
+     * 동시에 같은 주문을 취소해도 재고가 두번 늘지 않도록 취소가 끝날때까지 row lock 을 잡는다.
+     */
+    public List<Long> lockCancellable(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select o from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :status" +
+                        " and (d.status is null or d.status <> :comp)" +
+                        " order by o.id", Order.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("status", OrderStatus.ORDER)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultStream()
+                .map(Order::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 주문들의 상품별 주문 수량 합계 (상품 id -> 수량)
+     */
+    public Map<Long, Integer> sumCountByItem(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select oi.item.id, sum(oi.count) from OrderItem oi" +
+                        " where oi.order.id in :orderIds" +
+                        " group by oi.item.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultStream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).intValue()));
+    }
+
+    /**
+     * 주문 상태 일괄 취소
+     * bulk update 는 영속성 컨텍스트를 거치지 않으므로 끝나면 비워서 이전 상태의 엔티티가 남지 않게 한다.
+     * 비우기 전에 flush 한다. (자동 flush 는 orders 의 변경만 내보내므로 다른 엔티티의 변경이 사라진다)
+     */
+    public int cancelAll(Collection<Long> orderIds) {
+        em.flush();
+        int updated = em.createQuery("update versioned Order o set o.status = :status where o.id in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.clear();
+        return updated;
+    }
+
+    /**
+     * 회원 이름 부분 검색
+     * 회원 이름 trigram 인덱스로 후보 회원 id 를 먼저 찾고 주문은 member_id in (...) 으로 거른다. (idx_orders_member_order_date)
+     * 후보가 너무 많으면 in 절 대신 회원 조인 like 검색을 한다. (인덱스와 같이 대소문자 구분 없음)
+     */
+    private BooleanExpression memberNameContains(String memberName) {
+        if (!StringUtils.hasText(memberName)) {
+            return null;
+        }
+
+        Set<Long> memberIds = memberNameIndex.search(memberName);
+        if (memberIds.isEmpty()) {
+            return QOrder.order.id.isNull(); //맞는 회원이 없으면 결과 없음
+        }
+        if (memberIds.size() > MAX_MEMBER_CANDIDATES) {
+            return QOrder.order.member.name.containsIgnoreCase(memberName.replace("%", "").trim());
+        }
+        return QOrder.order.member.id.in(memberIds);
+    }
+
+    private BooleanExpression memberNameLike(String memberName) {
         if (!StringUtils.hasText(memberName)) {
             return null;
         }
         return QMember.member.name.like(memberName);
     }
 
+    private BooleanExpression orderDateGoe(LocalDate fromDate) {
+        if (fromDate == null) {
+            return null;
+        }
+        return QOrder.order.orderDate.goe(fromDate.atStartOfDay());
+    }
+
+    private BooleanExpression orderDateLoe(LocalDate toDate) {
+        if (toDate == null) {
+            return null;
+        }
+        return QOrder.order.orderDate.lt(toDate.plusDays(1).atStartOfDay());
+    }
+
+    private BooleanExpression totalPriceGoe(Integer minTotalPrice) {
+        if (minTotalPrice == null) {
+            return null;
+        }
+        return QOrder.order.totalPrice.goe(minTotalPrice);
+    }
+
+    private BooleanExpression totalPriceLoe(Integer maxTotalPrice) {
+        if (maxTotalPrice == null) {
+            return null;
+        }
+        return QOrder.order.totalPrice.loe(maxTotalPrice);
+    }
+
     private BooleanExpression statusEq(OrderStatus statusCond) {
         if (statusCond == null) {
             return null;
@@ -157,4 +391,79 @@ public class OrderRepository {
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    /**
+     * 주문 목록 keyset 페이징 (최근 주문부터)
+     * offset 페이징은 앞 페이지 row 를 모두 읽고 버리므로 뒤 페이지일수록 느리다.
+     * 마지막으로 받은 주문의 (주문시간, id) 다음부터 idx_orders_order_date_id 인덱스를 따라 limit 건만 읽는다.
+     * 첫 페이지는 lastOrderDate, lastId 를 null 로 넘긴다.
+     */
+    public List<Order> findAllWithMemberDelivery(LocalDateTime lastOrderDate, Long lastId, int limit) {
+        boolean first = lastOrderDate == null || lastId == null;
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d" +
+                (first ? "" : " where o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)") +
+                " order by o.orderDate desc, o.id desc";
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+                .setMaxResults(limit);
+        if (!first) {
+            query.setParameter("orderDate", lastOrderDate)
+                    .setParameter("id", lastId);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 주문상품까지 fetch join 한 주문 페이징 (2단계 조회)
+     * 컬렉션 fetch join 에 setFirstResult/setMaxResults 를 주면 hibernate 가 전체 row 를 메모리에 올려서 페이징한다. (HHH000104)
+     * 1. 주문 id 한 페이지만 가벼운 쿼리로 조회
+     * 2. 그 id 들의 주문을 회원, 배송, 주문상품, 상품까지 fetch join 한번으로 조회하고 1의 순서대로 돌려준다.
+     */
+    public List<Order> findAllWithItem(int offset, int limit) {
+        List<Long> orderIds = em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+        return findAllWithItem(orderIds);
+    }
+
+    /**
+     * 2단계 조회의 keyset 페이징 버전 (최근 주문부터, findAllWithMemberDelivery 와 같은 순서)
+     */
+    public List<Order> findAllWithItem(LocalDateTime lastOrderDate, Long lastId, int limit) {
+        boolean first = lastOrderDate == null || lastId == null;
+        TypedQuery<Long> query = em.createQuery("select o.id from Order o" +
+                (first ? "" : " where o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)") +
+                " order by o.orderDate desc, o.id desc", Long.class)
+                .setMaxResults(limit);
+        if (!first) {
+            query.setParameter("orderDate", lastOrderDate)
+                    .setParameter("id", lastId);
+        }
+        return findAllWithItem(query.getResultList());
+    }
+
+    private List<Order> findAllWithItem(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Order> orders = em.createQuery(
+                "select distinct o from Order o" +
+                        " join fetch o.member m" +
+                        " join fetch o.delivery d" +
+                        " left join fetch o.orderItems oi" +
+                        " left join fetch oi.item i" +
+                        " where o.id in :orderIds", Order.class)
+                .setParameter("orderIds", orderIds)
+                .getResultStream()
+                .collect(Collectors.toMap(Order::getId, Function.identity(), (a, b) -> a));
+
+        return orderIds.stream()
+                .map(orders::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 }
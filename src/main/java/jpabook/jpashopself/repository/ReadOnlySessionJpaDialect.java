@@ -0,0 +1,71 @@
+package jpabook.jpashopself.repository;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 읽기 전용 세션에서 실행한다. (변경감지용 스냅샷을 만들지 않는다)
+ * HibernateJpaDialect 는 트랜잭션 매니저가 새로 연 EntityManager 에만 setDefaultReadOnly 를 건다.
+ * OSIV 처럼 미리 열린 EntityManager 로 트랜잭션을 시작하면 flush 모드만 MANUAL 로 바꾸고 스냅샷은 그대로 만든다.
+ *
+ * - 트랜잭션을 시작할 때 세션의 기본 읽기 전용 여부를 트랜잭션의 readOnly 로 맞추고, 끝나면 시작 전 값으로 되돌린다.
+ * - 읽기 전용 세션(조회 요청의 OSIV)에서 읽기-쓰기 트랜잭션을 시작하면, 그 전에 읽기 전용으로 읽은 엔티티도
+ *   지금 값을 스냅샷으로 잡아서 수정할 수 있게 바꾼다. (수정이 반영되지 않고 버려지지 않도록)
+ */
+public class ReadOnlySessionJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        boolean previousReadOnly = session.isDefaultReadOnly();
+
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        session.setDefaultReadOnly(definition.isReadOnly());
+        if (previousReadOnly && !definition.isReadOnly()) {
+            makeModifiable(session);
+        }
+        return new ReadOnlyTransactionData(transactionData, session, previousReadOnly);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (!(transactionData instanceof ReadOnlyTransactionData)) {
+            super.cleanupTransaction(transactionData);
+            return;
+        }
+        ReadOnlyTransactionData data = (ReadOnlyTransactionData) transactionData;
+        if (data.session.isOpen()) {
+            data.session.setDefaultReadOnly(data.previousReadOnly);
+        }
+        super.cleanupTransaction(data.delegate);
+    }
+
+    private void makeModifiable(SessionImplementor session) {
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entry.getValue().isReadOnly()) {
+                session.setReadOnly(entry.getKey(), false);
+            }
+        }
+    }
+
+    private static class ReadOnlyTransactionData {
+
+        private final Object delegate;
+        private final SessionImplementor session;
+        private final boolean previousReadOnly;
+
+        ReadOnlyTransactionData(Object delegate, SessionImplementor session, boolean previousReadOnly) {
+            this.delegate = delegate;
+            this.session = session;
+            this.previousReadOnly = previousReadOnly;
+        }
+    }
+}
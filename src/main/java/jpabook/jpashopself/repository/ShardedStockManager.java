@@ -0,0 +1,246 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.ItemStockShard;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * 샤딩 재고 (jpashop.stock.mode=sharded)
+ * 상품 재고를 item_stock_shard 의 N개 row 로 나눠서 관리한다.
+ * 조건부 update 를 써도 한 row 에 차감이 몰리면 row lock 대기가 길어지므로, 차감할 row 를 임의로 골라 경합을 나눈다.
+ *
+ * - 차감: 임의의 샤드부터 돌면서 "quantity >= n" 조건부 update 가 성공하는 샤드에서 뺀다.
+ *         한 샤드로 부족하면 모든 샤드를 shard_no 순서로 잠그고 나눠서 뺀다.
+ * - 조회: 샤드 수량의 합. (refreshStock)
+ * - 샤드는 상품의 첫 재고 변경때 item.stock_quantity 를 나눠서 만든다. 이후 item.stock_quantity 는 갱신하지 않는다.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(name = "jpashop.stock.mode", havingValue = "sharded")
+public class ShardedStockManager implements StockManager {
+
+    private final EntityManager em;
+    private final int shardCount;
+    private final CatalogCache catalogCache;
+
+    //샤드가 만들어진 상품 id
+    private final Set<Long> shardedItems = ConcurrentHashMap.newKeySet();
+
+    public ShardedStockManager(EntityManager em, @Value("${jpashop.stock.shard.count:8}") int shardCount,
+                               CatalogCache catalogCache) {
+        this.em = em;
+        this.shardCount = shardCount;
+        this.catalogCache = catalogCache;
+    }
+
+    @Override
+    public void removeStock(Item item, int quantity) {
+        Long itemId = item.getId();
+        ensureShards(itemId);
+
+        if (!removeFromOneShard(itemId, quantity)) {
+            removeAcrossShards(itemId, quantity);
+        }
+        catalogCache.invalidate(Collections.singletonList(itemId));
+        syncStock(item, -quantity);
+    }
+
+    @Override
+    public void addStock(Item item, int quantity) {
+        addToShard(item.getId(), quantity);
+        catalogCache.invalidate(Collections.singletonList(item.getId()));
+        syncStock(item, quantity);
+    }
+
+    /**
+     * 상품마다 임의의 샤드 하나에 더한다. item id 순서로 반영해서 lock 순서를 맞춘다.
+     */
+    @Override
+    public void addStocks(Map<Long, Integer> quantities) {
+        new TreeMap<>(quantities).forEach(this::addToShard);
+        catalogCache.invalidate(quantities.keySet());
+    }
+
+    /**
+     * 기존 샤드를 지우고 새 재고를 다시 나눈다.
+     */
+    @Override
+    public void changeStock(Item item, int stockQuantity) {
+        Long itemId = item.getId();
+        lockItem(itemId);
+
+        em.createQuery("delete from ItemStockShard s where s.item.id = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        createShards(itemId, stockQuantity);
+        catalogCache.invalidate(Collections.singletonList(itemId));
+
+        item.setStockQuantity(stockQuantity);
+    }
+
+    /**
+     * 샤드 합계 한번에 조회
+     */
+    @Override
+    public void refreshStock(List<? extends Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        List<Long> itemIds = items.stream()
+                .map(Item::getId)
+                .collect(Collectors.toList());
+
+        Map<Long, Integer> sums = em.createQuery(
+                "select s.item.id, sum(s.quantity) from ItemStockShard s" +
+                        " where s.item.id in :itemIds" +
+                        " group by s.item.id", Object[].class)
+                .setParameter("itemIds", itemIds)
+                .getResultList().stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).intValue()));
+
+        for (Item item : items) {
+            Integer sum = sums.get(item.getId());
+            if (sum != null) {
+                item.setStockQuantity(sum);
+            }
+        }
+    }
+
+    private void addToShard(Long itemId, int quantity) {
+        ensureShards(itemId);
+
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int updated = em.createQuery(
+                    "update ItemStockShard s set s.quantity = s.quantity + :quantity" +
+                            " where s.item.id = :itemId and s.shardNo = :shardNo")
+                    .setParameter("quantity", quantity)
+                    .setParameter("itemId", itemId)
+                    .setParameter("shardNo", (start + i) % shardCount)
+                    .executeUpdate();
+            if (updated > 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 임의의 샤드부터 순서대로 조건부 차감
+     */
+    private boolean removeFromOneShard(Long itemId, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int updated = em.createQuery(
+                    "update ItemStockShard s set s.quantity = s.quantity - :quantity" +
+                            " where s.item.id = :itemId and s.shardNo = :shardNo and s.quantity >= :quantity")
+                    .setParameter("quantity", quantity)
+                    .setParameter("itemId", itemId)
+                    .setParameter("shardNo", (start + i) % shardCount)
+                    .executeUpdate();
+            if (updated > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 한 샤드로 부족하면 모든 샤드를 shard_no 순서로 잠그고 합계에서 뺀다.
+     * 잠그는 순서가 항상 같으므로 이 경로끼리는 데드락이 나지 않는다.
+     */
+    @SuppressWarnings("unchecked")
+    private void removeAcrossShards(Long itemId, int quantity) {
+        List<Object[]> shards = em.createNativeQuery(
+                "select shard_no, quantity from item_stock_shard" +
+                        " where item_id = ? order by shard_no for update")
+                .setParameter(1, itemId)
+                .getResultList();
+
+        int total = shards.stream().mapToInt(row -> ((Number) row[1]).intValue()).sum();
+        if (total < quantity) {
+            throw new NotEnoughStockException("need more stock");
+        }
+
+        int rest = quantity;
+        for (Object[] row : shards) {
+            int take = Math.min(rest, ((Number) row[1]).intValue());
+            if (take == 0) {
+                continue;
+            }
+            em.createQuery(
+                    "update ItemStockShard s set s.quantity = s.quantity - :quantity" +
+                            " where s.item.id = :itemId and s.shardNo = :shardNo")
+                    .setParameter("quantity", take)
+                    .setParameter("itemId", itemId)
+                    .setParameter("shardNo", ((Number) row[0]).intValue())
+                    .executeUpdate();
+            rest -= take;
+            if (rest == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 샤드가 없는 상품은 item row 를 잠그고 한번만 만든다.
+     */
+    private void ensureShards(Long itemId) {
+        if (shardedItems.contains(itemId)) {
+            return;
+        }
+        lockItem(itemId);
+
+        Long count = em.createQuery("select count(s) from ItemStockShard s where s.item.id = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+        if (count > 0) {
+            shardedItems.add(itemId);
+            return;
+        }
+
+        Integer stockQuantity = em.createQuery("select i.stockQuantity from Item i where i.id = :itemId", Integer.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+        createShards(itemId, stockQuantity);
+    }
+
+    private void createShards(Long itemId, int stockQuantity) {
+        Item item = em.getReference(Item.class, itemId);
+        for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+            int quantity = stockQuantity / shardCount + (shardNo < stockQuantity % shardCount ? 1 : 0);
+            em.persist(ItemStockShard.createShard(item, shardNo, quantity));
+        }
+        em.flush();
+        TransactionCallbacks.afterCommit(() -> shardedItems.add(itemId));
+    }
+
+    private void lockItem(Long itemId) {
+        em.createQuery("select i from Item i where i.id = :itemId", Item.class)
+                .setParameter("itemId", itemId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    private void syncStock(Item item, int delta) {
+        if (Hibernate.isInitialized(item)) {
+            item.setStockQuantity(item.getStockQuantity() + delta);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockJournal;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 메모리 재고 원장 (jpashop.stock.mode=ledger)
+ * 반짝 세일처럼 한 상품에 주문이 몰리면 item row 의 update 가 병목이 된다.
+ * 주문 가능 여부는 메모리의 상품별 카운터로 CAS 판단하고, item 에는 변화량을 모아서 주기적으로 batch update 한다.
+ *
+ * - 재고 변화량은 주문 트랜잭션 안에서 stock_journal 에 insert 한다. item row 를 update 하지 않으므로
+ *   같은 상품을 동시에 주문해도 서로 lock 을 기다리지 않고, 커밋된 변경은 모두 DB 에 남는다.
+ * - 차감은 즉시 카운터에 반영하고, 트랜잭션이 롤백되면 되돌린다.
+ * - flush 는 stock_journal 을 상품별로 합쳐서 item 에 반영하고, 반영한 기록을 같은 트랜잭션에서 지운다.
+ * - 카운터는 처음 사용될 때 item 재고 + 아직 반영되지 않은 stock_journal 합으로 채운다.
+ *   비정상 종료 후 재시작해도 커밋된 차감이 빠지지 않으므로 초과 판매하지 않는다.
+ * - 카운터가 JVM 메모리에 있으므로 애플리케이션을 한 대만 띄울 때만 사용한다.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "jpashop.stock.mode", havingValue = "ledger")
+public class StockLedger implements StockManager {
+
+    //flush 한번에 반영하는 기록 수
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    private final ItemRepository itemRepository;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogCache catalogCache;
+
+    //상품별 주문 가능 재고
+    private final ConcurrentHashMap<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    public StockLedger(ItemRepository itemRepository, EntityManager em, TransactionTemplate transactionTemplate,
+                       CatalogCache catalogCache) {
+        this.itemRepository = itemRepository;
+        this.em = em;
+        this.transactionTemplate = transactionTemplate;
+        this.catalogCache = catalogCache;
+    }
+
+    @Override
+    public void removeStock(Item item, int quantity) {
+        AtomicInteger counter = counter(item.getId());
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                break;
+            }
+        }
+
+        try {
+            em.persist(StockJournal.createJournal(item.getId(), -quantity));
+        } catch (RuntimeException e) {
+            counter.addAndGet(quantity);
+            throw e;
+        }
+        TransactionCallbacks.afterCompletion(() -> { }, () -> counter.addAndGet(quantity));
+        catalogCache.invalidate(Collections.singletonList(item.getId()));
+        syncStock(item, -quantity);
+    }
+
+    @Override
+    public void addStock(Item item, int quantity) {
+        Long itemId = item.getId();
+        em.persist(StockJournal.createJournal(itemId, quantity));
+        TransactionCallbacks.afterCommit(() -> counter(itemId).addAndGet(quantity));
+        catalogCache.invalidate(Collections.singletonList(itemId));
+        syncStock(item, quantity);
+    }
+
+    @Override
+    public void addStocks(Map<Long, Integer> quantities) {
+        Map<Long, Integer> copy = new HashMap<>(quantities);
+        copy.forEach((itemId, quantity) -> em.persist(StockJournal.createJournal(itemId, quantity)));
+        TransactionCallbacks.afterCommit(() -> copy.forEach((itemId, quantity) -> counter(itemId).addAndGet(quantity)));
+        catalogCache.invalidate(copy.keySet());
+    }
+
+    /**
+     * 상품 수정으로 재고를 바꾸면 현재 카운터와의 차이를 변화량으로 기록한다.
+     * 수정하는 동안 들어온 주문의 차감은 그대로 유지된다.
+     */
+    @Override
+    public void changeStock(Item item, int stockQuantity) {
+        Long itemId = item.getId();
+        int diff = stockQuantity - counter(itemId).get();
+        em.persist(StockJournal.createJournal(itemId, diff));
+        TransactionCallbacks.afterCommit(() -> counter(itemId).addAndGet(diff));
+        catalogCache.invalidate(Collections.singletonList(itemId));
+        item.setStockQuantity(stockQuantity);
+    }
+
+    /**
+     * DB 에 아직 반영되지 않은 변화량이 있으므로 카운터가 있는 상품은 카운터 값을 보여준다.
+     */
+    @Override
+    public void refreshStock(List<? extends Item> items) {
+        for (Item item : items) {
+            AtomicInteger counter = available.get(item.getId());
+            if (counter != null) {
+                item.setStockQuantity(counter.get());
+            }
+        }
+    }
+
+    /**
+     * 커밋된 변화량을 item 에 batch 로 반영 (write-behind)
+     * 반영과 기록 삭제가 한 트랜잭션이므로 실패하면 기록이 그대로 남아서 다음 주기에 다시 반영된다.
+     * 종료시 flush 와 겹쳐서 같은 기록을 두번 반영하지 않도록 한번에 하나만 실행한다.
+     */
+    @Scheduled(fixedDelayString = "${jpashop.stock.ledger.flush-interval-ms:100}")
+    public synchronized void flush() {
+        try {
+            Integer flushed;
+            do {
+                flushed = transactionTemplate.execute(status -> flushBatch());
+            } while (flushed != null && flushed == FLUSH_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.warn("재고 반영 실패, 다음 주기에 재시도합니다.", e);
+        }
+    }
+
+    private int flushBatch() {
+        List<StockJournal> journals = em.createQuery("select j from StockJournal j order by j.id", StockJournal.class)
+                .setMaxResults(FLUSH_BATCH_SIZE)
+                .getResultList();
+        if (journals.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Integer> deltas = journals.stream()
+                .collect(Collectors.groupingBy(StockJournal::getItemId, TreeMap::new, Collectors.summingInt(StockJournal::getDelta)));
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            itemRepository.addStocks(deltas);
+        }
+
+        List<Long> ids = journals.stream()
+                .map(StockJournal::getId)
+                .collect(Collectors.toList());
+        em.createQuery("delete from StockJournal j where j.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+        return journals.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private AtomicInteger counter(Long itemId) {
+        AtomicInteger counter = available.get(itemId);
+        if (counter != null) {
+            return counter;
+        }
+        return available.computeIfAbsent(itemId, id -> new AtomicInteger(findStock(id)));
+    }
+
+    /**
+     * item 재고 + 아직 반영되지 않은 변화량
+     * flush 와 겹쳐도 반영 전/후 어느 한쪽만 보이도록 쿼리 하나로 읽는다.
+     */
+    private int findStock(Long itemId) {
+        List<?> result = em.createQuery(
+                "select i.stockQuantity + coalesce((select sum(j.delta) from StockJournal j where j.itemId = i.id), 0)" +
+                        " from Item i where i.id = :itemId")
+                .setParameter("itemId", itemId)
+                .getResultList();
+        return result.isEmpty() ? 0 : ((Number) result.get(0)).intValue();
+    }
+
+    private void syncStock(Item item, int delta) {
+        if (Hibernate.isInitialized(item)) {
+            item.setStockQuantity(item.getStockQuantity() + delta);
+        }
+    }
+}
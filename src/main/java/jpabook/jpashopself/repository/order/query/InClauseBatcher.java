@@ -0,0 +1,117 @@
+package jpabook.jpashopself.repository.order.query;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * id 목록 in 쿼리를 chunk 로 나눠서 실행
+ * id 를 전부 in 절 하나에 넣으면 SQL 이 끝없이 길어지고, id 수마다 SQL 문자열이 달라서 쿼리 플랜 캐시가 가득 찬다.
+ *
+ * - chunk-size 개씩 나누고, 각 chunk 는 2의 거듭제곱 크기(최대 chunk-size)로 마지막 id 를 반복해서 채운다.
+ *   SQL 모양은 log2(chunk-size) + 1 가지만 생긴다.
+ * - parallelism 이 2 이상이면 chunk 들을 별도 스레드에서 각자의 읽기 전용 트랜잭션(커넥션)으로 동시에 실행한다.
+ *   커넥션 풀 크기를 넘지 않게 설정한다. 결과는 chunk 순서대로 합친다.
+ * - DTO 조회에만 쓴다. 다른 스레드에서 조회한 엔티티는 호출한 쪽 영속성 컨텍스트에 없다.
+ */
+@Component
+public class InClauseBatcher {
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkSize;
+    private final ExecutorService executor;
+
+    public InClauseBatcher(PlatformTransactionManager transactionManager,
+                           @Value("${jpashop.query.in-clause.chunk-size:500}") int chunkSize,
+                           @Value("${jpashop.query.in-clause.parallelism:1}") int parallelism) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.chunkSize = chunkSize;
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism, runnable -> {
+                    Thread thread = new Thread(runnable, "in-clause-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    /**
+     * query 에는 채워진 id chunk 가 넘어간다. id 가 없으면 쿼리를 실행하지 않는다.
+     */
+    public <T> List<T> fetch(List<Long> ids, Function<List<Long>, List<T>> query) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<Long>> chunks = chunks(ids);
+
+        List<T> result = new ArrayList<>();
+        if (executor == null || chunks.size() == 1) {
+            for (List<Long> chunk : chunks) {
+                result.addAll(query.apply(chunk));
+            }
+            return result;
+        }
+
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> readOnlyTransaction.execute(status -> query.apply(chunk)), executor));
+        }
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(pad(ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+        }
+        return chunks;
+    }
+
+    private List<Long> pad(List<Long> chunk) {
+        int bucket = 1;
+        while (bucket < chunk.size()) {
+            bucket <<= 1;
+        }
+        bucket = Math.min(bucket, chunkSize);
+
+        List<Long> padded = new ArrayList<>(bucket);
+        padded.addAll(chunk);
+        Long last = chunk.get(chunk.size() - 1);
+        while (padded.size() < bucket) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
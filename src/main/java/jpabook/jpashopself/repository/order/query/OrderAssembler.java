@@ -0,0 +1,78 @@
+package jpabook.jpashopself.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 주문 DTO 에 주문상품 DTO 를 붙이는 조립기 (OrderQueryDto, OrderQueryDtoSelf 공용)
+ * Collectors.groupingBy 는 키 박싱, HashMap Node, 중간 Map 을 만들고 결과 순서도 HashMap 순서라서 매번 다르다.
+ * 주문 id 를 long 그대로 LongObjectMap 에 넣고 한번씩만 돈다. 결과 순서는 입력 순서를 따른다.
+ */
+public final class OrderAssembler {
+
+    private OrderAssembler() {
+    }
+
+    /**
+     * 주문 목록에 따로 조회한 주문상품을 붙인다. (v5)
+     * 주문상품이 없는 주문은 빈 목록이다. 주문 순서는 그대로다.
+     */
+    public static <O, I> List<O> attachItems(List<O> orders, ToLongFunction<O> orderId,
+                                             List<I> items, ToLongFunction<I> itemOrderId,
+                                             BiConsumer<O, List<I>> setItems) {
+        LongObjectMap<List<I>> itemMap = new LongObjectMap<>(orders.size());
+        for (O order : orders) {
+            List<I> orderItems = new ArrayList<>(4);
+            itemMap.put(orderId.applyAsLong(order), orderItems);
+            setItems.accept(order, orderItems);
+        }
+
+        for (I item : items) {
+            List<I> orderItems = itemMap.get(itemOrderId.applyAsLong(item));
+            if (orderItems != null) {
+                orderItems.add(item);
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * 주문 x 주문상품 flat row 를 한번 돌면서 주문별로 묶는다. (v6)
+     * 주문은 처음 나온 순서대로 담기므로 row 를 주문 id 로 정렬해서 넘기면 주문 id 순서가 된다.
+     * 주문 DTO 의 equals/hashCode 에 의존하지 않는다.
+     */
+    public static <F, O, I> List<O> groupFlat(List<F> rows, ToLongFunction<F> orderId,
+                                              Function<F, O> toOrder, Function<F, I> toItem,
+                                              BiConsumer<O, List<I>> setItems) {
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<O> result = new ArrayList<>();
+        LongObjectMap<List<I>> itemMap = new LongObjectMap<>();
+        long lastId = 0;
+        List<I> lastItems = null;
+
+        for (F row : rows) {
+            long id = orderId.applyAsLong(row);
+            //정렬된 입력이면 대부분 직전 주문이라서 맵 조회도 생략된다
+            List<I> orderItems = lastItems != null && lastId == id ? lastItems : itemMap.get(id);
+            if (orderItems == null) {
+                O order = toOrder.apply(row);
+                orderItems = new ArrayList<>(4);
+                itemMap.put(id, orderItems);
+                setItems.accept(order, orderItems);
+                result.add(order);
+            }
+            orderItems.add(toItem.apply(row));
+
+            lastId = id;
+            lastItems = orderItems;
+        }
+        return result;
+    }
+}
@@ -15,6 +15,8 @@ public class OrderFlatDto {
     private LocalDateTime orderDate;
     private OrderStatus orderStatus;
     private Address address;
+    private int totalPrice;
+    private int itemCount;
 
     private String itemName;
     private int orderPrice;
@@ -30,4 +32,10 @@ public class OrderFlatDto {
         this.orderPrice = orderPrice;
         this.count = count;
     }
+
+    public OrderFlatDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, int totalPrice, int itemCount, String itemName, int orderPrice, int count) {
+        this(orderId, name, orderDate, orderStatus, address, itemName, orderPrice, count);
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
+    }
 }
@@ -1,18 +1,26 @@
 package jpabook.jpashopself.repository.order.query;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderQueryRepository {
 
     private final EntityManager em;
+    private final InClauseBatcher inClauseBatcher;
 
     public List<OrderQueryDto> findOrderQueryDtos() {
         List<OrderQueryDto> result = findOrders();
@@ -39,7 +47,7 @@ public class OrderQueryRepository {
 
     private List<OrderQueryDto> findOrders() {
         return em.createQuery(
-                "select new jpabook.jpashopself.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
+                "select new jpabook.jpashopself.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d", OrderQueryDto.class)
@@ -49,24 +57,59 @@ public class OrderQueryRepository {
     public List<OrderQueryDto> findAllByDto_optimization() {
         List<OrderQueryDto> result = findOrders();
 
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderids(result));
+        List<OrderItemQueryDto> orderItems = findOrderItems(toOrderids(result));
 
-        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+        return OrderAssembler.attachItems(result, OrderQueryDto::getOrderId,
+                orderItems, OrderItemQueryDto::getOrderId, OrderQueryDto::setOrderItems);
+    }
 
-        return result;
+    /**
+     * 주문 id 와 버전 (주문 id 순) - 주문 JSON 조각 캐시 확인용
+     */
+    public Map<Long, Long> findOrderVersions() {
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        em.createQuery("select o.id, o.version from Order o order by o.id", Object[].class)
+                .getResultList()
+                .forEach(row -> versions.put((Long) row[0], (Long) row[1]));
+        return versions;
+    }
+
+    /**
+     * 지정한 주문만 findAllByDto_optimization 방식으로 조회 (주문 JSON 조각 캐시에 없는 주문)
+     */
+    public List<OrderQueryDto> findAllByDto_optimization(List<Long> orderIds) {
+        List<OrderQueryDto> result = inClauseBatcher.fetch(orderIds, this::findOrdersIn);
+
+        return OrderAssembler.attachItems(result, OrderQueryDto::getOrderId,
+                findOrderItems(toOrderids(result)), OrderItemQueryDto::getOrderId, OrderQueryDto::setOrderItems);
+    }
+
+    private List<OrderQueryDto> findOrdersIn(List<Long> orderIds) {
+        return em.createQuery(
+                "select new jpabook.jpashopself.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds", OrderQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 주문상품을 주문 id chunk 별 in 쿼리로 조회 (InClauseBatcher)
+     */
+    private List<OrderItemQueryDto> findOrderItems(List<Long> orderIds) {
+        return inClauseBatcher.fetch(orderIds, this::findOrderItemsIn);
     }
 
-    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
+    private List<OrderItemQueryDto> findOrderItemsIn(List<Long> orderIds) {
+        return em.createQuery(
                 "select new jpabook.jpashopself.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
                         " from OrderItem oi" +
                         " join oi.item i" +
                         " where oi.order.id in :orderIds", OrderItemQueryDto.class)
                 .setParameter("orderIds", orderIds)
                 .getResultList();
-
-        return orderItems.stream()
-                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
     }
 
     private List<Long> toOrderids(List<OrderQueryDto> result) {
@@ -77,13 +120,83 @@ public class OrderQueryRepository {
 
     public List<OrderFlatDto> findAllByDto_flat() {
         return em.createQuery(
-                "select new jpabook.jpashopself.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                "select new jpabook.jpashopself.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount, i.name, oi.orderPrice, oi.count)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDto.class)
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
                 .getResultList();
 
     }
+
+    /**
+     * 전체 주문 내보내기 - findAllByDto_optimization 의 스트리밍 버전
+     * 주문은 forward-only 커서로 한 건씩 읽고, 주문상품은 chunkSize 건의 주문마다 in 쿼리로 채워서 consumer 에 넘긴다.
+     * DTO 조회라서 영속성 컨텍스트에 쌓이지 않으므로 주문 수와 상관없이 chunk 하나 만큼만 메모리를 쓴다.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllByDto_optimization(int chunkSize, Consumer<OrderQueryDto> consumer) {
+        try (Stream<OrderQueryDto> orders = em.createQuery(
+                "select new jpabook.jpashopself.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " order by o.id", OrderQueryDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, chunkSize)
+                .getResultStream()) {
+
+            List<OrderQueryDto> chunk = new ArrayList<>(chunkSize);
+            Iterator<OrderQueryDto> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    OrderAssembler.attachItems(chunk, OrderQueryDto::getOrderId,
+                            findOrderItems(toOrderids(chunk)), OrderItemQueryDto::getOrderId, OrderQueryDto::setOrderItems);
+                    chunk.forEach(consumer);
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * 전체 주문 내보내기 - findAllByDto_flat 의 스트리밍 버전
+     * 주문 id 순으로 정렬된 flat row 를 forward-only 커서로 읽으면서 같은 주문의 row 를 하나로 묶어 consumer 에 넘긴다.
+     * 쿼리는 한번이고 메모리에는 주문 한 건만 둔다.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllByDto_flat(int fetchSize, Consumer<OrderQueryDto> consumer) {
+        try (Stream<OrderFlatDto> flats = em.createQuery(
+                "select new jpabook.jpashopself.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream()) {
+
+            OrderQueryDto current = null;
+            Iterator<OrderFlatDto> iterator = flats.iterator();
+            while (iterator.hasNext()) {
+                OrderFlatDto flat = iterator.next();
+                if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(),
+                            flat.getOrderStatus(), flat.getAddress(), flat.getTotalPrice(), flat.getItemCount());
+                    current.setOrderItems(new ArrayList<>());
+                }
+                current.getOrderItems().add(new OrderItemQueryDto(flat.getOrderId(),
+                        flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
+    }
 }
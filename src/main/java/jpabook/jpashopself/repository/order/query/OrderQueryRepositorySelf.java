@@ -6,7 +6,6 @@ import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Repository
@@ -14,6 +13,7 @@ import java.util.stream.Collectors;
 public class OrderQueryRepositorySelf {
 
     private final EntityManager em;
+    private final InClauseBatcher inClauseBatcher;
 
     /**
      * 컬렉션은 별도로 조회
@@ -70,13 +70,12 @@ public class OrderQueryRepositorySelf {
         //루트 조회(ToOne 코드를 모두 한번에 조회)
         List<OrderQueryDtoSelf> result = findOrders();
 
-        //orderItem 컬렉션을 MAP 한방에 조회
-        Map<Long, List<OrderItemQueryDtoSelf>> orderItemMap = findOrderItemMap(toOrderIds(result));
+        //orderItem 컬렉션을 in 쿼리 한방에 조회
+        List<OrderItemQueryDtoSelf> orderItems = findOrderItems(toOrderIds(result));
 
-        //루프를 돌면서 컬렉션 추가
-        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
-
-        return  result;
+        //주문 id(long) 맵으로 한번씩만 돌면서 컬렉션 추가
+        return OrderAssembler.attachItems(result, OrderQueryDtoSelf::getOrderId,
+                orderItems, OrderItemQueryDtoSelf::getOrderId, OrderQueryDtoSelf::setOrderItems);
     }
 
     private List<Long> toOrderIds(List<OrderQueryDtoSelf> result) {
@@ -85,8 +84,15 @@ public class OrderQueryRepositorySelf {
                 .collect(Collectors.toList());
     }
 
-    private Map<Long, List<OrderItemQueryDtoSelf>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDtoSelf> orderItems = em.createQuery(
+    /**
+     * 주문 id 를 chunk 로 나누고 크기를 맞춰서 in 쿼리 (SQL 모양이 몇가지로 고정되어 플랜 캐시를 재사용한다)
+     */
+    private List<OrderItemQueryDtoSelf> findOrderItems(List<Long> orderIds) {
+        return inClauseBatcher.fetch(orderIds, this::findOrderItemsIn);
+    }
+
+    private List<OrderItemQueryDtoSelf> findOrderItemsIn(List<Long> orderIds) {
+        return em.createQuery(
                 "select new jpabook.jpashopself.repository.order.query.OrderItemQueryDtoSelf" +
                         "(oi.order.id, i.name, oi.orderPrice, oi.count)" +
                         " from OrderItem oi" +
@@ -94,20 +100,18 @@ public class OrderQueryRepositorySelf {
                         " where oi.order.id in :orderIds", OrderItemQueryDtoSelf.class)
                 .setParameter("orderIds", orderIds)
                 .getResultList();
-
-        return orderItems.stream()
-                .collect(Collectors.groupingBy(OrderItemQueryDtoSelf::getOrderId));
     }
 
     public List<OrderFlatDtoSelf> findALlByDto_flat() {
         return em.createQuery(
                 "select new jpabook.jpashopself.repository.order.query.OrderFlatDtoSelf" +
-                        "(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                        "(o.id, m.name, o.orderDate, d.address, o.status, i.name, oi.orderPrice, oi.count)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDtoSelf.class)
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDtoSelf.class)
                 .getResultList();
     }
 }
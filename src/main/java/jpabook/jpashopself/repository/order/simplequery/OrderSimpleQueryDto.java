@@ -15,6 +15,8 @@ public class OrderSimpleQueryDto {
     private LocalDateTime orderDate;
     private OrderStatus orderStatus;
     private Address address;
+    private int totalPrice;
+    private int itemCount;
 
     public OrderSimpleQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address) {
         this.orderId = orderId;
@@ -24,4 +26,10 @@ public class OrderSimpleQueryDto {
         this.address = address;
     }
 
+    public OrderSimpleQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, int totalPrice, int itemCount) {
+        this(orderId, name, orderDate, orderStatus, address);
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
+    }
+
 }
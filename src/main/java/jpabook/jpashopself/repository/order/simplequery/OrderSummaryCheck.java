@@ -0,0 +1,56 @@
+package jpabook.jpashopself.repository.order.simplequery;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 주문 요약 정합성 검사 결과
+ * - missingIds: 요약이 없는 주문
+ * - staleIds: 요약의 회원 이름, 주문일, 상태, 가격 합계, 배송지가 원본과 다른 주문
+ * - orphanIds: 주문이 없는 요약
+ * id 목록은 종류별로 최대 MAX_IDS 건만 담고, 건수는 전부 센다.
+ */
+@Getter
+public class OrderSummaryCheck {
+
+    private static final int MAX_IDS = 100;
+
+    private long orders;
+    private long missing;
+    private long stale;
+    private long orphans;
+    private final List<Long> missingIds = new ArrayList<>();
+    private final List<Long> staleIds = new ArrayList<>();
+    private final List<Long> orphanIds = new ArrayList<>();
+
+    public boolean isConsistent() {
+        return missing == 0 && stale == 0 && orphans == 0;
+    }
+
+    void order() {
+        orders++;
+    }
+
+    void missing(Long orderId) {
+        missing++;
+        add(missingIds, orderId);
+    }
+
+    void stale(Long orderId) {
+        stale++;
+        add(staleIds, orderId);
+    }
+
+    void orphan(Long orderId) {
+        orphans++;
+        add(orphanIds, orderId);
+    }
+
+    private static void add(List<Long> ids, Long orderId) {
+        if (ids.size() < MAX_IDS) {
+            ids.add(orderId);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package jpabook.jpashopself.repository.order.simplequery;
+
+import jpabook.jpashopself.domain.Address;
+import jpabook.jpashopself.domain.Order;
+import jpabook.jpashopself.domain.OrderStatus;
+import jpabook.jpashopself.domain.OrderSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 주문 요약 읽기 모델 (order_summary)
+ * 간단 주문 조회는 주문마다 orders, member, delivery 를 조인한다. 요약 테이블은 조인 없이 한 테이블만 읽는다.
+ *
+ * - 주문 저장(OrderRepository.save, 대량 주문), 취소, 회원 이름 변경때 같은 트랜잭션에서 갱신한다.
+ * - 이 경로 밖에서 주문/회원/배송을 직접 고치면 요약이 어긋난다. check 로 확인하고 rebuild 로 다시 만든다.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final EntityManager em;
+
+    /**
+     * 새 주문의 요약 저장 (주문 id 가 이미 정해진 뒤에 부른다)
+     */
+    public void save(Order order) {
+        em.persist(OrderSummary.createSummary(order));
+    }
+
+    public void updateStatus(Collection<Long> orderIds, OrderStatus status) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        em.createQuery("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+                .setParameter("status", status)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    public void updateMemberName(Long memberId, String name) {
+        em.createQuery("update OrderSummary s set s.memberName = :name where s.memberId = :memberId")
+                .setParameter("name", name)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    /**
+     * 간단 주문 조회 - order_summary 한 테이블만 읽는다.
+     */
+    public List<OrderSimpleQueryDto> findOrderDtos() {
+        return em.createQuery(
+                "select new jpabook.jpashopself.repository.order.simplequery.OrderSimpleQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address, s.totalPrice, s.itemCount)" +
+                        " from OrderSummary s", OrderSimpleQueryDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 요약 전체를 주문 원본으로 다시 만든다.
+     * 삭제 후 insert ... select 한번이라 주문 수만큼 엔티티를 만들지 않는다.
+     * native 쿼리는 어떤 테이블을 바꾸는지 hibernate 가 모르면 2차 캐시 전체를 비우므로 order_summary 만 바꾼다고 알려준다.
+     *
+     * @return 만든 요약 수
+     */
+    @Transactional
+    public int rebuild() {
+        em.flush();
+        em.createQuery("delete from OrderSummary").executeUpdate();
+        int inserted = em.createNativeQuery(
+                "insert into order_summary (order_id, member_id, member_name, order_date, status, total_price, item_count, city, street, zipcode)" +
+                        " select o.order_id, o.member_id, m.name, o.order_date, o.status, o.total_price, o.item_count, d.city, d.street, d.zipcode" +
+                        " from orders o" +
+                        " join member m on m.member_id = o.member_id" +
+                        " join delivery d on d.delivery_id = o.deliver_id")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderSummary.class)
+                .executeUpdate();
+        log.info("주문 요약 재생성 완료. summaries={}", inserted);
+        return inserted;
+    }
+
+    /**
+     * 주문 원본(조인 결과)과 요약을 주문 id 순으로 같이 읽으면서 비교한다.
+     * 두 결과 모두 커서로 읽으므로 주문 수와 상관없이 메모리는 일정하다.
+     */
+    @Transactional(readOnly = true)
+    public OrderSummaryCheck check() {
+        OrderSummaryCheck check = new OrderSummaryCheck();
+        try (Stream<OrderSimpleQueryDto> sources = em.createQuery(
+                "select new jpabook.jpashopself.repository.order.simplequery.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " order by o.id", OrderSimpleQueryDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream();
+             Stream<OrderSimpleQueryDto> summaries = em.createQuery(
+                     "select new jpabook.jpashopself.repository.order.simplequery.OrderSimpleQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address, s.totalPrice, s.itemCount)" +
+                             " from OrderSummary s" +
+                             " order by s.orderId", OrderSimpleQueryDto.class)
+                     .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                     .getResultStream()) {
+
+            Iterator<OrderSimpleQueryDto> sourceIterator = sources.iterator();
+            Iterator<OrderSimpleQueryDto> summaryIterator = summaries.iterator();
+            OrderSimpleQueryDto source = next(sourceIterator);
+            OrderSimpleQueryDto summary = next(summaryIterator);
+
+            while (source != null || summary != null) {
+                int compare = source == null ? 1 : summary == null ? -1 : source.getOrderId().compareTo(summary.getOrderId());
+                if (compare < 0) {
+                    check.order();
+                    check.missing(source.getOrderId());
+                    source = next(sourceIterator);
+                } else if (compare > 0) {
+                    check.orphan(summary.getOrderId());
+                    summary = next(summaryIterator);
+                } else {
+                    check.order();
+                    if (!same(source, summary)) {
+                        check.stale(source.getOrderId());
+                    }
+                    source = next(sourceIterator);
+                    summary = next(summaryIterator);
+                }
+            }
+        }
+        return check;
+    }
+
+    private static OrderSimpleQueryDto next(Iterator<OrderSimpleQueryDto> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static boolean same(OrderSimpleQueryDto source, OrderSimpleQueryDto summary) {
+        return Objects.equals(source.getName(), summary.getName())
+                && Objects.equals(source.getOrderDate(), summary.getOrderDate())
+                && source.getOrderStatus() == summary.getOrderStatus()
+                && source.getTotalPrice() == summary.getTotalPrice()
+                && source.getItemCount() == summary.getItemCount()
+                && same(source.getAddress(), summary.getAddress());
+    }
+
+    private static boolean same(Address source, Address summary) {
+        if (source == null || summary == null) {
+            return source == summary;
+        }
+        return Objects.equals(source.getCity(), summary.getCity())
+                && Objects.equals(source.getStreet(), summary.getStreet())
+                && Objects.equals(source.getZipcode(), summary.getZipcode());
+    }
+}
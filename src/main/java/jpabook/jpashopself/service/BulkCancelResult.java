@@ -0,0 +1,34 @@
+package jpabook.jpashopself.service;
+
+import lombok.Getter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 일괄 취소 결과
+ * 건너뛴 주문은 없거나, 이미 취소됐거나, 배송완료된 주문이다.
+ */
+@Getter
+public class BulkCancelResult {
+
+    private final int requested;
+    private final int cancelled;
+    private final List<Long> skippedIds;
+
+    private BulkCancelResult(int requested, int cancelled, List<Long> skippedIds) {
+        this.requested = requested;
+        this.cancelled = cancelled;
+        this.skippedIds = skippedIds;
+    }
+
+    static BulkCancelResult of(List<Long> requestedIds, List<Long> cancelledIds) {
+        Set<Long> cancelled = new HashSet<>(cancelledIds);
+        List<Long> skippedIds = requestedIds.stream()
+                .filter(id -> !cancelled.contains(id))
+                .collect(Collectors.toList());
+        return new BulkCancelResult(requestedIds.size(), cancelledIds.size(), skippedIds);
+    }
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 대량 주문 등록의 주문 한 건 (요청의 한 줄)
+ */
+@Getter
+public class BulkOrder {
+
+    private final int lineNo;
+    private final Long memberId;
+    private final List<OrderLine> orderLines;
+    private final String error;  //요청을 읽지 못한 경우의 사유
+
+    private BulkOrder(int lineNo, Long memberId, List<OrderLine> orderLines, String error) {
+        this.lineNo = lineNo;
+        this.memberId = memberId;
+        this.orderLines = orderLines;
+        this.error = error;
+    }
+
+    public static BulkOrder of(int lineNo, Long memberId, List<OrderLine> orderLines) {
+        return new BulkOrder(lineNo, memberId, orderLines, null);
+    }
+
+    public static BulkOrder invalid(int lineNo, String error) {
+        return new BulkOrder(lineNo, null, Collections.emptyList(), error);
+    }
+}
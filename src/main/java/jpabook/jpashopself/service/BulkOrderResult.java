@@ -0,0 +1,42 @@
+package jpabook.jpashopself.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대량 주문 등록 결과
+ * 실패 사유는 앞에서부터 MAX_FAILURES 건까지만 담는다.
+ */
+@Getter
+public class BulkOrderResult {
+
+    private static final int MAX_FAILURES = 1000;
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private final List<Failure> failures = new ArrayList<>();
+
+    void success() {
+        total++;
+        succeeded++;
+    }
+
+    void fail(int lineNo, String message) {
+        total++;
+        failed++;
+        if (failures.size() < MAX_FAILURES) {
+            failures.add(new Failure(lineNo, message));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Failure {
+        private int lineNo;
+        private String message;
+    }
+}
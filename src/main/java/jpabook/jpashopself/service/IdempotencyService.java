@@ -0,0 +1,204 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.IdempotencyKey;
+import jpabook.jpashopself.exception.DuplicateRequestException;
+import jpabook.jpashopself.repository.IdempotencyKeyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key 로 등록 요청 중복 처리 방지
+ * 클라이언트가 타임아웃 후 같은 키로 재시도하면 처음 요청의 결과(등록된 id)를 그대로 돌려준다.
+ *
+ * - 최근 키는 메모리 캐시에 둔다. 처리 중인 키로 동시에 들어온 요청은 다시 실행하지 않고 처음 요청의 결과를 기다린다.
+ * - 캐시는 max-size 건, cache-ttl-ms 동안만 유지하고, 그 뒤에는 idempotency_key 테이블로 확인한다. (retention-ms 동안 보관)
+ * - 테이블에 키를 먼저 등록(claim)하고 처리하므로 서버가 여러 대여도 한번만 처리된다.
+ *   다른 서버에서 처리 중인 키면 DuplicateRequestException(409) 이다.
+ * - 처리(action)와 결과 기록은 같은 트랜잭션이다. 주문이 커밋됐으면 결과도 같이 커밋되어 있다.
+ *   (그룹 커밋은 트랜잭션 안에서 부르면 묶지 않으므로 키가 있는 주문은 바로 처리된다)
+ * - 처리 중인 키는 lease-ms 동안만 유효하다. 서버가 처리 중에 죽으면 임대가 끝난 뒤 재시도가 넘겨받아 처리한다.
+ *   임대가 끝난 뒤에 커밋하려는 원래 요청은 결과 기록이 실패해서 롤백되므로 두번 처리되지 않는다.
+ * - 처리가 실패하면 (롤백) 키를 지워서 같은 키로 다시 시도할 수 있게 한다.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSize;
+    private final long cacheTtlNanos;
+    private final long retentionMillis;
+    private final long leaseMillis;
+
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository, EntityManager em,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${jpashop.idempotency.max-size:10000}") int maxSize,
+                              @Value("${jpashop.idempotency.cache-ttl-ms:600000}") long cacheTtlMillis,
+                              @Value("${jpashop.idempotency.retention-ms:86400000}") long retentionMillis,
+                              @Value("${jpashop.idempotency.lease-ms:30000}") long leaseMillis) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.em = em;
+        this.transactionTemplate = transactionTemplate;
+        this.maxSize = maxSize;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis);
+        this.retentionMillis = retentionMillis;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 키가 없으면 그냥 실행한다.
+     * scope 는 기능별 키 구분 (order, member)
+     */
+    public Long execute(String scope, String idempotencyKey, Supplier<Long> action) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return action.get();
+        }
+        String key = scope + ":" + idempotencyKey;
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 가 너무 깁니다.");
+        }
+
+        CachedResult mine = new CachedResult();
+        CachedResult cached = cache.compute(key, (k, existing) ->
+                existing == null || existing.isExpired(cacheTtlNanos) ? mine : existing);
+        if (cached != mine) {
+            return await(cached.result);
+        }
+        if (cache.size() > maxSize) {
+            evict();
+        }
+
+        try {
+            Long resultId = claimAndRun(key, action);
+            mine.result.complete(resultId);
+            return resultId;
+        } catch (RuntimeException e) {
+            //실패한 결과는 남기지 않는다. 기다리던 요청에는 같은 예외를 돌려준다.
+            cache.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Long claimAndRun(String key, Supplier<Long> action) {
+        String claimToken = UUID.randomUUID().toString();
+        Optional<Long> stored = claim(key, claimToken);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        try {
+            //action 의 @Transactional 은 이 트랜잭션에 참여한다
+            return transactionTemplate.execute(status -> {
+                Long resultId = action.get();
+                if (idempotencyKeyRepository.complete(key, claimToken, resultId) == 0) {
+                    throw new DuplicateRequestException("임대 시간이 지나 같은 Idempotency-Key 를 다른 요청이 처리 중입니다.");
+                }
+                return resultId;
+            });
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> idempotencyKeyRepository.release(key, claimToken));
+            throw e;
+        }
+    }
+
+    /**
+     * 테이블에 키 등록. 이미 처리된 키면 저장된 결과를 돌려준다.
+     * 처리 중인 키는 임대가 끝났으면 넘겨받고, 아니면 DuplicateRequestException 이다.
+     */
+    private Optional<Long> claim(String key, String claimToken) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                em.persist(IdempotencyKey.createKey(key, claimToken, leaseExpiresAt()));
+                em.flush();
+            });
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            IdempotencyKey existing = idempotencyKeyRepository.findById(key).orElseThrow(() -> e);
+            if (existing.getResultId() != null) {
+                return Optional.of(existing.getResultId());
+            }
+
+            Integer taken = transactionTemplate.execute(status ->
+                    idempotencyKeyRepository.takeOver(key, claimToken, leaseExpiresAt(), LocalDateTime.now()));
+            if (taken == null || taken == 0) {
+                throw new DuplicateRequestException("같은 Idempotency-Key 의 요청을 처리 중입니다.");
+            }
+            log.info("임대가 끝난 Idempotency-Key 를 넘겨받아 다시 처리합니다. key={}", key);
+            return Optional.empty();
+        }
+    }
+
+    private LocalDateTime leaseExpiresAt() {
+        return LocalDateTime.now().plus(leaseMillis, ChronoUnit.MILLIS);
+    }
+
+    private Long await(CompletableFuture<Long> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 만료된 키를 지우고, 그래도 max-size 를 넘으면 처리가 끝난 키부터 지운다.
+     * 캐시에서 지워진 키도 테이블에 남아 있으므로 재시도는 여전히 중복 처리되지 않는다.
+     */
+    private void evict() {
+        cache.values().removeIf(cached -> cached.isExpired(cacheTtlNanos));
+        Iterator<CachedResult> iterator = cache.values().iterator();
+        while (cache.size() > maxSize && iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.idempotency.eviction-interval-ms:60000}")
+    public void purge() {
+        cache.values().removeIf(cached -> cached.isExpired(cacheTtlNanos));
+
+        LocalDateTime expired = LocalDateTime.now().minus(retentionMillis, ChronoUnit.MILLIS);
+        Integer deleted = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteCreatedBefore(expired));
+        if (deleted != null && deleted > 0) {
+            log.debug("만료된 Idempotency-Key {}건 삭제", deleted);
+        }
+    }
+
+    private static class CachedResult {
+
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final long createdNanos = System.nanoTime();
+
+        boolean isExpired(long ttlNanos) {
+            return result.isDone() && System.nanoTime() - createdNanos > ttlNanos;
+        }
+    }
+}
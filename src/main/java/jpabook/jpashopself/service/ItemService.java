@@ -2,12 +2,19 @@ package jpabook.jpashopself.service;
 
 import jpabook.jpashopself.domain.item.Book;
 import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.repository.CatalogCache;
 import jpabook.jpashopself.repository.ItemRepository;
+import jpabook.jpashopself.repository.ItemSnapshot;
+import jpabook.jpashopself.repository.OrderJsonCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
@@ -15,6 +22,9 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final StockManager stockManager;
+    private final CatalogCache catalogCache;
+    private final OrderJsonCache orderJsonCache;
 
     /*
      * 상품 등록
@@ -22,27 +32,44 @@ public class ItemService {
     @Transactional
     public Long join(Item item) {
         itemRepository.save(item);
+        catalogCache.invalidateAll();
         return item.getId();
     }
 
     @Transactional
     public void updateItem(Long itemId, String name, int price, int stockQuantity) {
         Item findItem = itemRepository.findOne(itemId);
+        if (!Objects.equals(findItem.getName(), name)) {
+            orderJsonCache.clear(); //주문 JSON 조각에 상품 이름이 들어있다
+        }
         findItem.setName(name);
         findItem.setPrice(price);
-        findItem.setStockQuantity(stockQuantity);
+        stockManager.changeStock(findItem, stockQuantity);
+        catalogCache.invalidate(Collections.singletonList(itemId));
     }
     /*
-     * 상품 조회
+     * 상품 조회 (상품 목록 캐시)
      **/
-    public List<Item> findItems() {
-        return itemRepository.findAll();
+    public List<ItemSnapshot> findItems() {
+        return catalogCache.get(() -> toSnapshots(itemRepository.findAll()),
+                ids -> toSnapshots(itemRepository.findAllById(ids)));
+    }
+
+    private List<ItemSnapshot> toSnapshots(List<Item> items) {
+        stockManager.refreshStock(items);
+        return items.stream()
+                .map(ItemSnapshot::of)
+                .collect(Collectors.toList());
     }
 
     /*
      * 상품 수정
      **/
     public Item findOne(Long itemId) {
-        return itemRepository.findOne(itemId);
+        Item item = itemRepository.findOne(itemId);
+        if (item != null) {
+            stockManager.refreshStock(Collections.singletonList(item));
+        }
+        return item;
     }
 }
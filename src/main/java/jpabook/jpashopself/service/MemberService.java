@@ -2,8 +2,12 @@ package jpabook.jpashopself.service;
 
 import jpabook.jpashopself.domain.Address;
 import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.repository.MemberNameIndex;
 import jpabook.jpashopself.repository.MemberRepository;
 import jpabook.jpashopself.repository.MemberRepositoryOld;
+import jpabook.jpashopself.repository.OrderJsonCache;
+import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,6 +20,10 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final MemberNameIndex memberNameIndex;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final OrderRepository orderRepository;
+    private final OrderJsonCache orderJsonCache;
 
     /*
      * 회원가입
@@ -24,6 +32,7 @@ public class MemberService {
     public Long join(Member member) {
         validateDuplicateMember(member);  //중복 회원 검증
         memberRepository.save(member);
+        memberNameIndex.put(member.getId(), member.getName());
         return member.getId();
     }
 
@@ -51,12 +60,18 @@ public class MemberService {
     public void update(Long id, String name) {
         Member member = memberRepository.findById(id).get();
         member.setName(name);
+        memberNameIndex.put(id, name);
+        orderSummaryRepository.updateMemberName(id, name);
+        orderJsonCache.evict(orderRepository.findIdsByMember(id));
     }
 
     @Transactional
     public void updateAll(Long id, String name, String city, String street, String zipcode) {
         Member member = memberRepository.findById(id).get();
         member.setName(name);
+        memberNameIndex.put(id, name);
+        orderSummaryRepository.updateMemberName(id, name);
+        orderJsonCache.evict(orderRepository.findIdsByMember(id));
 
         Address address = new Address(city, street, zipcode);
         member.setAddress(address);
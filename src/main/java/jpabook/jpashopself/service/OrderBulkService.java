@@ -0,0 +1,183 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.*;
+import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import jpabook.jpashopself.repository.ItemRepository;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 대량 주문 등록 (파트너 시스템 주문 재처리)
+ * 주문 한 건마다 OrderService.order 를 부르면 트랜잭션과 SQL 이 주문 수만큼 나간다.
+ *
+ * - chunk-size 건씩 트랜잭션 하나로 처리한다. 회원, 상품은 chunk 마다 in 쿼리로 한번에 조회한다.
+ * - 주문, 배송, 주문상품 insert 는 chunk 끝에서 flush 할때 jdbc batch 로 나간다.
+ * - chunk 가 끝나면 영속성 컨텍스트를 비워서 건수가 많아도 메모리 사용량이 늘지 않는다.
+ * - 회원/상품이 없거나 재고가 부족한 건은 그 건만 실패로 기록하고 나머지는 계속 처리한다.
+ *   chunk 트랜잭션이 통째로 실패하면 (데드락 등) 그 chunk 만 한건씩 다시 처리한다.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderBulkService {
+
+    private final EntityManager em;
+    private final ItemRepository itemRepository;
+    private final StockManager stockManager;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${jpashop.order.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    public BulkOrderResult order(Iterator<BulkOrder> bulkOrders) {
+        BulkOrderResult result = new BulkOrderResult();
+        List<BulkOrder> chunk = new ArrayList<>(chunkSize);
+
+        while (bulkOrders.hasNext()) {
+            BulkOrder bulkOrder = bulkOrders.next();
+            if (bulkOrder.getError() != null) {
+                result.fail(bulkOrder.getLineNo(), bulkOrder.getError());
+                continue;
+            }
+
+            chunk.add(bulkOrder);
+            if (chunk.size() == chunkSize) {
+                orderChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            orderChunk(chunk, result);
+        }
+        return result;
+    }
+
+    private void orderChunk(List<BulkOrder> chunk, BulkOrderResult result) {
+        try {
+            Map<Integer, String> failures = transactionTemplate.execute(status -> placeOrders(chunk));
+            record(chunk, failures, result);
+        } catch (RuntimeException e) {
+            //chunk 전체가 롤백되면 한건씩 다시 처리해서 실패한 건만 골라낸다
+            for (BulkOrder bulkOrder : chunk) {
+                List<BulkOrder> single = Collections.singletonList(bulkOrder);
+                try {
+                    record(single, transactionTemplate.execute(status -> placeOrders(single)), result);
+                } catch (RuntimeException ex) {
+                    result.fail(bulkOrder.getLineNo(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void record(List<BulkOrder> chunk, Map<Integer, String> failures, BulkOrderResult result) {
+        for (BulkOrder bulkOrder : chunk) {
+            String failure = failures.get(bulkOrder.getLineNo());
+            if (failure == null) {
+                result.success();
+            } else {
+                result.fail(bulkOrder.getLineNo(), failure);
+            }
+        }
+    }
+
+    /**
+     * chunk 의 주문을 저장하고 실패한 건의 사유를 돌려준다. (줄 번호 -> 사유)
+     */
+    private Map<Integer, String> placeOrders(List<BulkOrder> chunk) {
+        Map<Long, Member> members = findMembers(chunk);
+        Map<Long, Item> items = findItems(chunk);
+
+        Map<Integer, String> failures = new HashMap<>();
+        for (BulkOrder bulkOrder : chunk) {
+            try {
+                Order order = createOrder(bulkOrder, members, items);
+                em.persist(order);
+                orderSummaryRepository.save(order);
+            } catch (NotEnoughStockException | IllegalArgumentException e) {
+                failures.put(bulkOrder.getLineNo(), e.getMessage());
+            }
+        }
+
+        //insert 는 여기서 jdbc batch 로 나가고, 영속성 컨텍스트는 비운다
+        em.flush();
+        em.clear();
+        return failures;
+    }
+
+    private Order createOrder(BulkOrder bulkOrder, Map<Long, Member> members, Map<Long, Item> items) {
+        Member member = members.get(bulkOrder.getMemberId());
+        if (member == null) {
+            throw new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + bulkOrder.getMemberId());
+        }
+        if (bulkOrder.getOrderLines().isEmpty()) {
+            throw new IllegalArgumentException("주문 상품이 없습니다.");
+        }
+
+        //item id 순으로 정렬된 상품별 수량
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (OrderLine orderLine : bulkOrder.getOrderLines()) {
+            if (!items.containsKey(orderLine.getItemId())) {
+                throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + orderLine.getItemId());
+            }
+            if (orderLine.getCount() <= 0) {
+                throw new IllegalArgumentException("주문 수량은 1 이상이어야 합니다. itemId=" + orderLine.getItemId());
+            }
+            counts.merge(orderLine.getItemId(), orderLine.getCount(), Integer::sum);
+        }
+
+        List<OrderItem> orderItems = new ArrayList<>();
+        try {
+            for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+                Item item = items.get(entry.getKey());
+                orderItems.add(OrderItem.createOrderItem(item, item.getPrice(), entry.getValue(), stockManager));
+            }
+        } catch (NotEnoughStockException e) {
+            //트랜잭션은 chunk 단위라서 이 주문에서 이미 차감한 재고는 직접 되돌린다
+            for (OrderItem orderItem : orderItems) {
+                stockManager.addStock(orderItem.getItem(), orderItem.getCount());
+            }
+            throw e;
+        }
+
+        return Order.createOrder(member, Delivery.createDelivery(member.getAddress()), orderItems.toArray(new OrderItem[0]));
+    }
+
+    private Map<Long, Member> findMembers(List<BulkOrder> chunk) {
+        Set<Long> memberIds = chunk.stream()
+                .map(BulkOrder::getMemberId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (memberIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return em.createQuery("select m from Member m where m.id in :memberIds", Member.class)
+                .setParameter("memberIds", memberIds)
+                .getResultList().stream()
+                .collect(Collectors.toMap(Member::getId, Function.identity()));
+    }
+
+    private Map<Long, Item> findItems(List<BulkOrder> chunk) {
+        Set<Long> itemIds = chunk.stream()
+                .flatMap(o -> o.getOrderLines().stream())
+                .map(OrderLine::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (itemIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+    }
+}
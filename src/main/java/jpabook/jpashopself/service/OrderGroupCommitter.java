@@ -0,0 +1,234 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.domain.item.StockManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 그룹 커밋 (jpashop.order.group-commit.enabled=true)
+ * 주문 한 건마다 트랜잭션을 커밋하면 커밋(디스크 fsync) 비용을 주문 수만큼 낸다.
+ * 짧은 시간(window-ms) 안에 들어온 주문을 max-batch-size 건까지 모아서 트랜잭션 하나로 처리하고 한번만 커밋한다.
+ * 호출한 쪽은 지금처럼 주문 id 를 받을 때까지 기다린다. (동기 API 그대로)
+ *
+ * - 묶음의 모든 상품 row 를 처음에 item id 순서로 잠근다. 주문마다 상품을 정렬해도 묶음 전체로는 순서가 섞이므로
+ *   동시에 처리되는 다른 묶음(worker), 단건 주문과 lock 순서가 엇갈리지 않게 한다.
+ *   item row 를 잠그지 않는 재고 구현체(원장, 샤딩)에서는 잠그지 않는다. (StockManager.lockStocks)
+ * - 데드락, lock 대기 시간 초과는 일시적인 실패이므로 묶음 전체를 MAX_LOCK_RETRIES 번까지 다시 처리한다.
+ * - 묶음 중 한 주문이 실패하면 (재고 부족 등) 묶음을 롤백하고, 그 주문만 실패로 돌려준 뒤 나머지를 다시 묶어서 처리한다.
+ * - 커밋 자체가 실패하면 묶음을 반으로 나눠서 다시 처리한다. 한 건만 남으면 그 건의 실패로 돌려준다.
+ * - 이미 트랜잭션 안에서 호출하면 묶지 않고 그 트랜잭션에서 바로 처리한다. (다른 스레드에서는 아직 커밋 안 된 데이터가 안 보인다)
+ */
+@Slf4j
+@Service
+public class OrderGroupCommitter {
+
+    //데드락, lock 대기 시간 초과시 묶음 전체를 다시 처리하는 횟수
+    private static final int MAX_LOCK_RETRIES = 3;
+
+    private final OrderService orderService;
+    private final StockManager stockManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>(10_000);
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public OrderGroupCommitter(OrderService orderService, StockManager stockManager, TransactionTemplate transactionTemplate,
+                               @Value("${jpashop.order.group-commit.enabled:false}") boolean enabled,
+                               @Value("${jpashop.order.group-commit.window-ms:2}") long windowMillis,
+                               @Value("${jpashop.order.group-commit.max-batch-size:50}") int maxBatchSize,
+                               @Value("${jpashop.order.group-commit.workers:2}") int workerCount) {
+        this.orderService = orderService;
+        this.stockManager = stockManager;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+
+        if (enabled) {
+            for (int i = 1; i <= workerCount; i++) {
+                Thread worker = new Thread(this::runWorker, "order-group-commit-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+    }
+
+    /**
+     * 주문 등록
+     * 그룹 커밋을 쓰지 않거나 대기열이 가득 찼으면 OrderService.order 로 바로 처리한다.
+     */
+    public Long order(Long memberId, List<OrderLine> orderLines) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return orderService.order(memberId, orderLines);
+        }
+
+        PendingOrder pendingOrder = new PendingOrder(memberId, orderLines);
+        if (!running || !queue.offer(pendingOrder)) {
+            return orderService.order(memberId, orderLines);
+        }
+
+        try {
+            return pendingOrder.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문 처리 대기 중 중단되었습니다.", e);
+        }
+    }
+
+    private void runWorker() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                //window 가 끝나거나 max-batch-size 가 찰 때까지 모은다
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remain = deadline - System.nanoTime();
+                    PendingOrder next = remain > 0 ? queue.poll(remain, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                commit(batch, 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("그룹 커밋 처리 실패", e);
+                batch.forEach(pendingOrder -> pendingOrder.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 묶음을 트랜잭션 하나로 처리한다.
+     */
+    private void commit(List<PendingOrder> batch, int lockRetries) {
+        int[] failedIndex = {-1};
+        List<Long> orderIds;
+        try {
+            orderIds = transactionTemplate.execute(status -> {
+                stockManager.lockStocks(itemIds(batch));
+
+                List<Long> ids = new ArrayList<>(batch.size());
+                for (PendingOrder pendingOrder : batch) {
+                    failedIndex[0] = ids.size();
+                    ids.add(orderService.order(pendingOrder.memberId, pendingOrder.orderLines));
+                }
+                failedIndex[0] = -1;
+                return ids;
+            });
+        } catch (RuntimeException e) {
+            if (isLockFailure(e) && lockRetries < MAX_LOCK_RETRIES) {
+                log.info("그룹 커밋 lock 실패, 묶음을 다시 처리합니다. size={}, retry={}", batch.size(), lockRetries + 1);
+                commit(batch, lockRetries + 1);
+                return;
+            }
+            retry(batch, isLockFailure(e) ? -1 : failedIndex[0], e);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(orderIds.get(i));
+        }
+    }
+
+    private void retry(List<PendingOrder> batch, int failedIndex, RuntimeException e) {
+        if (batch.size() == 1) {
+            batch.get(0).result.completeExceptionally(e);
+            return;
+        }
+
+        //실패한 주문만 빼고 나머지를 다시 묶어서 처리
+        if (failedIndex >= 0) {
+            batch.get(failedIndex).result.completeExceptionally(e);
+            List<PendingOrder> rest = new ArrayList<>(batch);
+            rest.remove(failedIndex);
+            commit(rest, 0);
+            return;
+        }
+
+        //커밋이 실패하면 어느 주문 때문인지 모르므로 반으로 나눠서 처리
+        int half = batch.size() / 2;
+        commit(new ArrayList<>(batch.subList(0, half)), 0);
+        commit(new ArrayList<>(batch.subList(half, batch.size())), 0);
+    }
+
+    private Set<Long> itemIds(List<PendingOrder> batch) {
+        return batch.stream()
+                .flatMap(pendingOrder -> pendingOrder.orderLines.stream())
+                .map(OrderLine::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    //데드락, lock 대기 시간 초과 (CannotAcquireLockException, DeadlockLoserDataAccessException 포함)
+    private boolean isLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PessimisticLockingFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 종료시 대기열에 남은 주문까지 처리하고 끝낸다.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private static class PendingOrder {
+
+        private final Long memberId;
+        private final List<OrderLine> orderLines;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        PendingOrder(Long memberId, List<OrderLine> orderLines) {
+            this.memberId = memberId;
+            this.orderLines = orderLines;
+        }
+    }
+}
@@ -2,24 +2,42 @@ package jpabook.jpashopself.service;
 
 import jpabook.jpashopself.domain.*;
 import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
 import jpabook.jpashopself.repository.ItemRepository;
 import jpabook.jpashopself.repository.MemberRepository;
 import jpabook.jpashopself.repository.MemberRepositoryOld;
+import jpabook.jpashopself.repository.OrderJsonCache;
 import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.repository.order.simplequery.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderService {
 
+    //일괄 취소시 in 절 하나에 넣는 주문 수
+    private static final int CANCEL_CHUNK_SIZE = 1000;
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final StockManager stockManager;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final OrderJsonCache orderJsonCache;
 
     /**
      * 주문 등록
@@ -32,18 +50,60 @@ public class OrderService {
         Item item = itemRepository.findOne(itemId);
 
         //배송정보 생성
-        Delivery delivery = new Delivery();
-        delivery.setAddress(member.getAddress());
-        delivery.setStatus(DeliveryStatus.READY);
+        Delivery delivery = Delivery.createDelivery(member.getAddress());
 
-        //주문상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        //주문상품 생성 (재고는 조건부 update 로 차감)
+        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count, stockManager);
 
         //주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
 
         //주문 저장
         orderRepository.save(order);
+        orderSummaryRepository.save(order);
+        return order.getId();
+    }
+
+    /**
+     * 장바구니 주문 등록 (주문 한 건에 여러 상품)
+     * - 상품은 in 쿼리 한번으로 조회한다.
+     * - 같은 상품 줄은 합치고 item id 순서로 재고를 차감한다.
+     *   동시에 들어온 장바구니들이 항상 같은 순서로 row lock 을 잡으므로 서로 데드락이 나지 않는다.
+     * - 주문, 배송, 주문상품 insert 는 flush 시점에 jdbc batch 로 나간다. (hibernate.jdbc.batch_size)
+     **/
+    @Transactional
+    public Long order(Long memberId, List<OrderLine> orderLines) {
+        if (orderLines.isEmpty()) {
+            throw new IllegalArgumentException("주문 상품이 없습니다.");
+        }
+
+        //item id 순으로 정렬된 상품별 수량
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (OrderLine orderLine : orderLines) {
+            counts.merge(orderLine.getItemId(), orderLine.getCount(), Integer::sum);
+        }
+
+        //엔티티 조회
+        Member member = memberRepository.findById(memberId).get();
+        Map<Long, Item> items = itemRepository.findAllById(counts.keySet()).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+
+        //주문상품 생성 (item id 순서로 재고 차감)
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            Item item = items.get(entry.getKey());
+            if (item == null) {
+                throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + entry.getKey());
+            }
+            orderItems.add(OrderItem.createOrderItem(item, item.getPrice(), entry.getValue(), stockManager));
+        }
+
+        //주문 생성
+        Order order = Order.createOrder(member, Delivery.createDelivery(member.getAddress()), orderItems.toArray(new OrderItem[0]));
+
+        //주문 저장
+        orderRepository.save(order);
+        orderSummaryRepository.save(order);
         return order.getId();
     }
 
@@ -57,7 +117,56 @@ public class OrderService {
         Order order = orderRepository.findOne(orderId);
 
         //주문 취소
-        order.cancel();
+        order.cancel(stockManager);
+        orderSummaryRepository.updateStatus(Collections.singletonList(orderId), OrderStatus.CANCEL);
+        orderJsonCache.evict(Collections.singletonList(orderId));
+    }
+
+    /**
+     * 주문 일괄 취소 (결제사 장애 등으로 주문을 한번에 취소)
+     * 주문마다 cancel 을 부르면 주문상품, 상품을 하나씩 읽고 재고를 하나씩 올리게 된다. (1 + 2N select, N update)
+     * - 취소 가능한 주문(ORDER 상태, 배송완료 아님)만 골라서 잠근다. 나머지는 건너뛴다.
+     * - 재고는 상품별로 수량을 합쳐서 한번에 올린다.
+     * - 주문 상태는 bulk update 로 바꾼다.
+     * 주문 수와 상관없이 CANCEL_CHUNK_SIZE 건마다 쿼리 몇번으로 끝난다.
+     */
+    @Transactional
+    public BulkCancelResult cancelOrders(List<Long> orderIds) {
+        List<Long> distinctIds = orderIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        List<Long> cancelled = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += CANCEL_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + CANCEL_CHUNK_SIZE, distinctIds.size()));
+
+            List<Long> cancellable = orderRepository.lockCancellable(chunk);
+            if (cancellable.isEmpty()) {
+                continue;
+            }
+            stockManager.addStocks(orderRepository.sumCountByItem(cancellable));
+            orderRepository.cancelAll(cancellable);
+            orderSummaryRepository.updateStatus(cancellable, OrderStatus.CANCEL);
+            orderJsonCache.evict(cancellable);
+            cancelled.addAll(cancellable);
+        }
+
+        return BulkCancelResult.of(distinctIds, cancelled);
+    }
+
+    /**
+     * 검색 조건에 맞는 주문 일괄 취소
+     * 조건이 하나도 없으면 전체 주문이 취소되므로 막는다.
+     */
+    @Transactional
+    public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+        if (orderSearch.getOrderStatus() == null && !StringUtils.hasText(orderSearch.getMemberName())
+                && orderSearch.getFromDate() == null && orderSearch.getToDate() == null
+                && orderSearch.getMinTotalPrice() == null && orderSearch.getMaxTotalPrice() == null) {
+            throw new IllegalArgumentException("취소할 주문의 검색 조건이 없습니다.");
+        }
+        return cancelOrders(orderRepository.findIds(orderSearch));
     }
 
     /**
@@ -66,4 +175,11 @@ public class OrderService {
     public List<Order> findOrders(OrderSearch orderSearch) {
         return orderRepository.findAll(orderSearch);
     }
+
+    /**
+     * 주문 검색 (페이징, 전체 건수)
+     */
+    public Page<Order> findOrderPage(OrderSearch orderSearch) {
+        return orderRepository.findPage(orderSearch);
+    }
 }
@@ -0,0 +1,23 @@
+package jpabook.jpashopself.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 비동기 주문 접수 현황
+ * 지연시간은 접수부터 주문 처리가 끝날 때까지의 시간이다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSubmissionMetrics {
+
+    private int queueDepth;
+    private int queueCapacity;
+    private int activeWorkers;
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long rejected;
+    private double avgLatencyMillis;
+    private double maxLatencyMillis;
+}
@@ -0,0 +1,148 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.exception.OrderQueueFullException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 비동기 주문 접수
+ * 요청 스레드는 요청 형식만 확인하고 대기열에 넣은 뒤 접수표를 바로 돌려준다.
+ * 작업 스레드들이 대기열에서 꺼내서 OrderService.order 로 주문을 처리한다.
+ *
+ * - 대기열은 queue-capacity 로 크기가 정해져 있고, 가득 차면 OrderQueueFullException 으로 바로 거절한다. (backpressure)
+ * - 처리가 끝난 접수표는 ticket-retention-ms 동안 조회할 수 있다.
+ * - 접수표는 JVM 메모리에만 있으므로 재시작하면 처리 전인 주문은 사라진다.
+ */
+@Slf4j
+@Service
+public class OrderSubmissionService {
+
+    private final OrderService orderService;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long ticketRetentionMillis;
+
+    private final Map<String, OrderTicket> tickets = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public OrderSubmissionService(OrderService orderService,
+                                  @Value("${jpashop.order.async.workers:4}") int workers,
+                                  @Value("${jpashop.order.async.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${jpashop.order.async.ticket-retention-ms:600000}") long ticketRetentionMillis) {
+        this.orderService = orderService;
+        this.queueCapacity = queueCapacity;
+        this.ticketRetentionMillis = ticketRetentionMillis;
+
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "order-worker-" + threadNo.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 주문 접수
+     * 회원, 상품 존재 여부와 재고는 작업 스레드에서 확인하고 실패하면 접수표에 사유가 남는다.
+     */
+    public OrderTicket submit(Long memberId, List<OrderLine> orderLines) {
+        if (memberId == null) {
+            throw new IllegalArgumentException("회원이 없습니다.");
+        }
+        if (orderLines == null || orderLines.isEmpty()) {
+            throw new IllegalArgumentException("주문 상품이 없습니다.");
+        }
+        for (OrderLine orderLine : orderLines) {
+            if (orderLine.getItemId() == null || orderLine.getCount() <= 0) {
+                throw new IllegalArgumentException("주문 상품과 수량을 확인해주세요.");
+            }
+        }
+
+        OrderTicket ticket = new OrderTicket(UUID.randomUUID().toString());
+        tickets.put(ticket.getTicketId(), ticket);
+        try {
+            executor.execute(() -> process(ticket, memberId, orderLines));
+        } catch (RejectedExecutionException e) {
+            tickets.remove(ticket.getTicketId());
+            rejected.increment();
+            throw new OrderQueueFullException("주문 대기열이 가득 찼습니다. 잠시 후 다시 시도해주세요.");
+        }
+        submitted.increment();
+        return ticket;
+    }
+
+    public Optional<OrderTicket> findTicket(String ticketId) {
+        return Optional.ofNullable(tickets.get(ticketId));
+    }
+
+    public OrderSubmissionMetrics metrics() {
+        long done = completed.sum() + failed.sum();
+        double avgLatencyMillis = done == 0 ? 0 : latencyNanos.sum() / (double) done / 1_000_000;
+
+        return new OrderSubmissionMetrics(
+                executor.getQueue().size(), queueCapacity, executor.getActiveCount(),
+                submitted.sum(), completed.sum(), failed.sum(), rejected.sum(),
+                avgLatencyMillis, maxLatencyNanos.get() / 1_000_000.0);
+    }
+
+    private void process(OrderTicket ticket, Long memberId, List<OrderLine> orderLines) {
+        try {
+            Long orderId = orderService.order(memberId, orderLines);
+            ticket.complete(orderId);
+            completed.increment();
+        } catch (RuntimeException e) {
+            log.debug("비동기 주문 실패 ticketId={}", ticket.getTicketId(), e);
+            ticket.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            failed.increment();
+        }
+
+        long latency = System.nanoTime() - ticket.getSubmittedNanos();
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * 보관 기간이 지난 처리 완료 접수표 정리
+     */
+    @Scheduled(fixedDelayString = "${jpashop.order.async.eviction-interval-ms:60000}")
+    public void evictTickets() {
+        LocalDateTime expired = LocalDateTime.now().minus(ticketRetentionMillis, ChronoUnit.MILLIS);
+        tickets.values().removeIf(ticket -> ticket.isDone() && ticket.getCompletedAt().isBefore(expired));
+    }
+
+    /**
+     * 종료시 대기열에 남은 주문은 처리하고 끝낸다.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("비동기 주문 처리가 끝나지 않았습니다. 남은 주문={}", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+}
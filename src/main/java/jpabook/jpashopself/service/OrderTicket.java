@@ -0,0 +1,58 @@
+package jpabook.jpashopself.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 비동기 주문 접수표
+ * 접수하면 PENDING 이고, 작업 스레드가 주문을 처리하면 COMPLETED(주문 id) 또는 FAILED(사유)가 된다.
+ */
+@Getter
+public class OrderTicket {
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED
+    }
+
+    private final String ticketId;
+    private final LocalDateTime submittedAt;
+    private volatile Status status = Status.PENDING;
+    private volatile Long orderId;
+    private volatile String message;
+    private volatile LocalDateTime completedAt;
+
+    @JsonIgnore
+    private final long submittedNanos;
+    @JsonIgnore
+    private final CompletableFuture<OrderTicket> result = new CompletableFuture<>();
+
+    OrderTicket(String ticketId) {
+        this.ticketId = ticketId;
+        this.submittedAt = LocalDateTime.now();
+        this.submittedNanos = System.nanoTime();
+    }
+
+    void complete(Long orderId) {
+        this.orderId = orderId;
+        finish(Status.COMPLETED);
+    }
+
+    void fail(String message) {
+        this.message = message;
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status status) {
+        this.completedAt = LocalDateTime.now();
+        this.status = status;
+        result.complete(this);
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return status != Status.PENDING;
+    }
+}
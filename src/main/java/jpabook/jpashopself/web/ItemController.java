@@ -1,7 +1,7 @@
 package jpabook.jpashopself.web;
 
 import jpabook.jpashopself.domain.item.Book;
-import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.repository.ItemSnapshot;
 import jpabook.jpashopself.service.ItemService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -49,7 +49,7 @@ public class ItemController {
     @GetMapping(value = "/items")
     public String list(Model model) {
 
-        List<Item> items = itemService.findItems();
+        List<ItemSnapshot> items = itemService.findItems();
         model.addAttribute("items", items);
         return "items/itemList";
     }
@@ -0,0 +1,26 @@
+package jpabook.jpashopself.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * OSIV 인터셉터를 조회 요청은 읽기 전용 세션으로 여는 것으로 바꾼다.
+ * 스프링 부트의 기본 OSIV 인터셉터는 이 빈이 있으면 등록되지 않는다. (spring.jpa.open-in-view=false 면 둘다 없음)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.jpa", name = "open-in-view", havingValue = "true", matchIfMissing = true)
+public class JpaWebConfig implements WebMvcConfigurer {
+
+    @Bean
+    public ReadOnlyOpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new ReadOnlyOpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor());
+    }
+}
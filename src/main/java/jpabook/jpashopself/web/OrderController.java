@@ -2,16 +2,24 @@ package jpabook.jpashopself.web;
 
 import jpabook.jpashopself.domain.Member;
 import jpabook.jpashopself.domain.Order;
+import jpabook.jpashopself.domain.OrderLine;
 import jpabook.jpashopself.domain.OrderSearch;
-import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.exception.OrderQueueFullException;
+import jpabook.jpashopself.repository.ItemSnapshot;
+import jpabook.jpashopself.service.IdempotencyService;
 import jpabook.jpashopself.service.ItemService;
 import jpabook.jpashopself.service.MemberService;
+import jpabook.jpashopself.service.OrderGroupCommitter;
 import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.service.OrderSubmissionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
 
 @Controller
@@ -21,20 +29,42 @@ public class OrderController {
     private final OrderService orderService;
     private final ItemService itemService;
     private final MemberService memberService;
+    private final OrderSubmissionService orderSubmissionService;
+    private final OrderGroupCommitter orderGroupCommitter;
+    private final IdempotencyService idempotencyService;
+
+    //주문 폼을 비동기 접수로 처리할지 여부
+    @Value("${jpashop.order.async.enabled:false}")
+    private boolean asyncOrder;
 
     @GetMapping(value = "/order")
     public String createForm(Model model) {
         List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
+        List<ItemSnapshot> items = itemService.findItems();
         model.addAttribute("members", members);
         model.addAttribute("items", items);
         return "order/orderForm";
     }
 
+    /**
+     * 비동기 접수에서 대기열이 가득 찼거나 주문 내용이 잘못되면 주문 폼을 사유와 함께 다시 보여준다.
+     */
     @PostMapping(value = "/order")
     public String createOrder(@RequestParam("memberId") Long memberId, @RequestParam("itemId") Long itemId,
-                        @RequestParam("count") int count) {
-        orderService.order(memberId, itemId, count);
+                        @RequestParam("count") int count,
+                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                        Model model) {
+        List<OrderLine> orderLines = Collections.singletonList(new OrderLine(itemId, count));
+        if (asyncOrder) {
+            try {
+                orderSubmissionService.submit(memberId, orderLines);
+            } catch (OrderQueueFullException | IllegalArgumentException e) {
+                model.addAttribute("errorMessage", e.getMessage());
+                return createForm(model);
+            }
+        } else {
+            idempotencyService.execute("order", idempotencyKey, () -> orderGroupCommitter.order(memberId, orderLines));
+        }
         return "redirect:/orders";
     }
 
@@ -43,8 +73,9 @@ public class OrderController {
      */
     @GetMapping(value = "/orders")
     public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
-        List<Order> orders = orderService.findOrders(orderSearch);
-        model.addAttribute("orders", orders);
+        Page<Order> page = orderService.findOrderPage(orderSearch);
+        model.addAttribute("orders", page.getContent());
+        model.addAttribute("page", page);
 
         return "order/orderList";
     }
@@ -0,0 +1,47 @@
+package jpabook.jpashopself.web;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpMethod;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * OSIV + 조회 요청(GET, HEAD)은 읽기 전용 세션
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 트랜잭션 동안만 세션을 읽기 전용으로 바꾼다. (ReadOnlySessionJpaDialect)
+ * OSIV 에서는 트랜잭션이 끝난 뒤의 지연 로딩, 트랜잭션 없이 리포지토리를 부르는 API 가 일반 세션에서 엔티티를 읽으므로
+ * 변경감지용 스냅샷이 엔티티마다 하나씩 요청이 끝날때까지 남는다.
+ *
+ * - 조회 요청은 세션을 처음부터 읽기 전용으로 열고 flush 하지 않는다. (스냅샷을 만들지 않는다)
+ * - 조회 요청 중에 시작한 읽기-쓰기 트랜잭션은 트랜잭션 동안 일반 세션으로 돌아간다. (ReadOnlySessionJpaDialect)
+ *   트랜잭션 밖에서 엔티티를 수정하는 것은 반영되지 않는다.
+ */
+public class ReadOnlyOpenEntityManagerInViewInterceptor extends OpenEntityManagerInViewInterceptor {
+
+    @Override
+    public void preHandle(WebRequest request) throws DataAccessException {
+        super.preHandle(request);
+        if (!isReadRequest(request)) {
+            return;
+        }
+
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        if (holder != null) {
+            Session session = holder.getEntityManager().unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+        }
+    }
+
+    private boolean isReadRequest(WebRequest request) {
+        if (!(request instanceof ServletWebRequest)) {
+            return false;
+        }
+        HttpMethod method = ((ServletWebRequest) request).getHttpMethod();
+        return method == HttpMethod.GET || method == HttpMethod.HEAD;
+    }
+}
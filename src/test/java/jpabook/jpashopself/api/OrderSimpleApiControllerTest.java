@@ -0,0 +1,85 @@
+package jpabook.jpashopself.api;
+
+import jpabook.jpashopself.api.OrderSimpleApiController.SimpleOrderDto;
+import jpabook.jpashopself.domain.Delivery;
+import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.support.QueryCounter;
+import jpabook.jpashopself.support.TestFixtures;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 배송(Delivery)의 mappedBy 쪽 주문(order)은 바이트코드 향상으로 지연 로딩된다.
+ * fetch join 으로 읽어도 배송마다 주문을 다시 조회하지 않아야 한다.
+ */
+@SpringBootTest(properties = QueryCounter.PROPERTY)
+class OrderSimpleApiControllerTest {
+
+    private static final int ORDERS = 5;
+
+    @Autowired EntityManager em;
+    @Autowired OrderSimpleApiController orderSimpleApiController;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 간단주문조회_v3_쿼리_한번() throws Exception {
+
+        //given
+        createOrders();
+
+        //when
+        QueryCounter.clear();
+        List<SimpleOrderDto> result = transactionTemplate.execute(status -> orderSimpleApiController.orderV3());
+
+        //then
+        assertTrue(result.size() >= ORDERS);
+        assertEquals(1, QueryCounter.count(), "주문, 회원, 배송을 조인한 쿼리 한번만 나가야 한다. " + QueryCounter.statements());
+    }
+
+    @Test
+    public void 배송조회시_주문은_읽지_않는다() throws Exception {
+
+        //given
+        List<Long> orderIds = createOrders();
+        Long deliveryId = transactionTemplate.execute(status ->
+                orderRepository.findOne(orderIds.get(0)).getDelivery().getId());
+
+        //when
+        QueryCounter.clear();
+        Boolean orderLoaded = transactionTemplate.execute(status -> {
+            Delivery delivery = em.find(Delivery.class, deliveryId);
+            return Hibernate.isPropertyInitialized(delivery, "order");
+        });
+
+        //then
+        assertFalse(orderLoaded);
+        assertEquals(1, QueryCounter.count(), "배송 조회만 나가야 한다. " + QueryCounter.statements());
+    }
+
+    private List<Long> createOrders() {
+        Long memberId = fixtures.saveMember("회원1");
+        Long itemId = fixtures.saveBook("시골 JPA", 10000, ORDERS);
+
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds.add(orderService.order(memberId, itemId, 1));
+        }
+        return orderIds;
+    }
+}
@@ -0,0 +1,158 @@
+package jpabook.jpashopself.benchmark;
+
+import jpabook.jpashopself.domain.Order;
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.service.BulkOrder;
+import jpabook.jpashopself.service.BulkOrderResult;
+import jpabook.jpashopself.service.OrderBulkService;
+import jpabook.jpashopself.support.TestFixtures;
+import jpabook.jpashopself.web.ReadOnlyOpenEntityManagerInViewInterceptor;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OSIV 조회 요청에서 주문 10만건 목록 조회의 메모리 할당량 비교 (주문 + 회원 + 배송 fetch join)
+ * 요청마다 인터셉터의 preHandle 로 EntityManager 를 미리 열어둔 상태에서 조회한다. (실제 요청과 같은 경로)
+ * - osiv: 스프링 기본 OSIV 인터셉터 + 트랜잭션 없는 조회 (/api/v3/simple-orders). 엔티티마다 변경감지용 스냅샷을 둔다.
+ * - osiv + read-only transaction: 스프링 기본 OSIV 인터셉터 + 읽기 전용 트랜잭션 (ReadOnlySessionJpaDialect)
+ * - read-only osiv: ReadOnlyOpenEntityManagerInViewInterceptor + 트랜잭션 없는 조회
+ * 할당량은 조회한 스레드의 누적 할당 바이트(ThreadMXBean), 유지 메모리는 조회 직후 GC 후 사용 중인 힙으로 잰다.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class ReadOnlySessionBenchmark {
+
+    private static final int ORDERS = 100_000;
+
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderBulkService orderBulkService;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ReadOnlyOpenEntityManagerInViewInterceptor readOnlyInterceptor;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void listOrders() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("읽기전용회원");
+        Long itemId = fixtures.saveBook("읽기전용 JPA", 10000, ORDERS);
+
+        List<BulkOrder> bulkOrders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            bulkOrders.add(BulkOrder.of(i + 1, memberId, List.of(new OrderLine(itemId, 1))));
+        }
+        BulkOrderResult result = orderBulkService.order(bulkOrders.iterator());
+        assertEquals(ORDERS, result.getSucceeded());
+
+        OpenEntityManagerInViewInterceptor osivInterceptor = new OpenEntityManagerInViewInterceptor();
+        osivInterceptor.setEntityManagerFactory(emf);
+
+        //warm up
+        listOrders(osivInterceptor, false);
+        listOrders(osivInterceptor, true);
+        listOrders(readOnlyInterceptor, false);
+
+        //when
+        Measurement osiv = listOrders(osivInterceptor, false);
+        Measurement readOnlyTransaction = listOrders(osivInterceptor, true);
+        Measurement readOnlyOsiv = listOrders(readOnlyInterceptor, false);
+
+        //then
+        osiv.report("osiv");
+        readOnlyTransaction.report("osiv + read-only transaction");
+        readOnlyOsiv.report("read-only osiv");
+        assertFalse(osiv.readOnly);
+        assertTrue(readOnlyTransaction.readOnly, "미리 열린 세션에서도 읽기 전용 트랜잭션은 읽기 전용으로 읽는다.");
+        assertTrue(readOnlyOsiv.readOnly, "조회 요청은 트랜잭션 없이도 읽기 전용으로 읽는다.");
+        assertTrue(readOnlyTransaction.allocated < osiv.allocated, "읽기 전용 트랜잭션은 스냅샷만큼 덜 할당해야 한다.");
+        assertTrue(readOnlyOsiv.allocated < osiv.allocated, "읽기 전용 OSIV 는 스냅샷만큼 덜 할당해야 한다.");
+    }
+
+    private Measurement listOrders(OpenEntityManagerInViewInterceptor interceptor, boolean readOnlyTransaction) {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v3/simple-orders"));
+        interceptor.preHandle(request);
+        try {
+            if (!readOnlyTransaction) {
+                return measure();
+            }
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            return transactionTemplate.execute(status -> measure());
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+    }
+
+    private Measurement measure() {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long begin = System.nanoTime();
+
+        List<Order> orders = orderRepository.findAllWithMemberDelivery();
+        long totalPrice = 0;
+        for (Order order : orders) {
+            totalPrice += order.getTotalPrice() + order.getMember().getName().length()
+                    + order.getDelivery().getAddress().getCity().length();
+        }
+
+        long elapsed = System.nanoTime() - begin;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        //영속성 컨텍스트가 엔티티(와 스냅샷)를 잡고 있는 동안의 힙
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long retained = runtime.totalMemory() - runtime.freeMemory();
+
+        assertTrue(totalPrice > 0);
+        boolean readOnly = em.unwrap(Session.class).isReadOnly(orders.get(0));
+        return new Measurement(orders.size(), allocated, retained, elapsed, readOnly);
+    }
+
+    static class Measurement {
+        private final int orders;
+        private final long allocated;
+        private final long retained;
+        private final long elapsedNanos;
+        private final boolean readOnly;
+
+        Measurement(int orders, long allocated, long retained, long elapsedNanos, boolean readOnly) {
+            this.orders = orders;
+            this.allocated = allocated;
+            this.retained = retained;
+            this.elapsedNanos = elapsedNanos;
+            this.readOnly = readOnly;
+        }
+
+        void report(String name) {
+            System.out.printf("[%s] orders=%d allocated=%dMB (%d bytes/order) heap used=%dMB elapsed=%dms%n",
+                    name, orders, allocated / (1024 * 1024), allocated / orders, retained / (1024 * 1024),
+                    elapsedNanos / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashopself.benchmark;
+
+import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.support.QueryCounter;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 2차 캐시 사용 여부에 따른 주문 등록의 회원/상품 조회 횟수 비교
+ * - 캐시를 매번 비우면 주문마다 회원, 상품을 select 한다.
+ * - 캐시를 쓰면 회원은 캐시에서 읽는다. 상품은 주문마다 재고가 바뀌어 캐시에서 지워지므로 다시 select 한다.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = QueryCounter.PROPERTY)
+class SecondLevelCacheBenchmark {
+
+    private static final int ORDERS = 1000;
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired OrderService orderService;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void orderWithoutCache() throws Exception {
+        //given
+        Long memberId = fixtures.saveMember("캐시회원");
+        Long itemId = fixtures.saveBook("캐시 JPA", 10000, ORDERS);
+
+        //when
+        QueryCounter.clear();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            emf.getCache().evictAll();
+            orderService.order(memberId, itemId, 1);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        //then
+        long memberSelects = report("no cache", elapsed);
+        assertEquals(ORDERS, memberSelects, "캐시가 없으면 주문마다 회원을 조회한다.");
+    }
+
+    @Test
+    public void orderWithCache() throws Exception {
+        //given
+        Long memberId = fixtures.saveMember("캐시회원");
+        Long itemId = fixtures.saveBook("캐시 JPA", 10000, ORDERS);
+        emf.getCache().evictAll();
+
+        //when
+        QueryCounter.clear();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            orderService.order(memberId, itemId, 1);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        //then
+        long memberSelects = report("second level cache", elapsed);
+        assertEquals(1, memberSelects, "회원은 처음 한번만 조회하고 이후에는 캐시에서 읽어야 한다.");
+    }
+
+    private long report(String name, long elapsedNanos) {
+        long memberSelects = QueryCounter.count(sql -> QueryCounter.isSelect(sql) && sql.toLowerCase().contains(" from member "));
+        long itemSelects = QueryCounter.count(sql -> QueryCounter.isSelect(sql) && sql.toLowerCase().contains(" from item "));
+        System.out.printf("[%s] orders=%d member selects=%d item selects=%d total statements=%d elapsed=%dms%n",
+                name, ORDERS, memberSelects, itemSelects, QueryCounter.count(), elapsedNanos / 1_000_000);
+        return memberSelects;
+    }
+}
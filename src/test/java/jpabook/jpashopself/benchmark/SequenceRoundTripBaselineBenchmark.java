@@ -0,0 +1,29 @@
+package jpabook.jpashopself.benchmark;
+
+import jpabook.jpashopself.support.QueryCounter;
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SequenceRoundTripBenchmark 의 비교 기준
+ * allocation size 1 이면 기본 hibernate_sequence (increment 1) 처럼 insert 한건마다 시퀀스를 조회한다.
+ * 스키마를 다시 만들므로 다른 테스트와 섞이지 않게 별도 메모리 DB 를 쓴다.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {QueryCounter.PROPERTY, SequenceRoundTripBenchmark.STATISTICS,
+        "spring.jpa.properties.jpashop.id.allocation_size=1",
+        "spring.datasource.url=jdbc:h2:mem:sequence-baseline"})
+class SequenceRoundTripBaselineBenchmark extends SequenceRoundTripBenchmark {
+
+    @Override
+    String name() {
+        return "allocation 1";
+    }
+
+    @Override
+    void verifySequenceCalls(long rows, long sequenceCalls) {
+        assertEquals(rows, sequenceCalls, "insert 한건마다 시퀀스를 조회한다.");
+    }
+}
@@ -0,0 +1,114 @@
+package jpabook.jpashopself.benchmark;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.service.BulkOrder;
+import jpabook.jpashopself.service.BulkOrderResult;
+import jpabook.jpashopself.service.OrderBulkService;
+import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.support.QueryCounter;
+import jpabook.jpashopself.support.TestFixtures;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * id 생성 시퀀스 조회 횟수 비교
+ * PooledSequenceGenerator 는 엔티티마다 allocation size(50) 만큼 한번에 받아온다.
+ * 비교 기준은 SequenceRoundTripBaselineBenchmark (allocation size 1, 기본 hibernate_sequence 처럼 insert 마다 조회)
+ *
+ * insert 된 row 수는 hibernate 통계(entity insert count)로 센다.
+ * QueryCounter 는 jdbc batch 마다 SQL 한번만 보이므로 insert 문 수는 batch 수에 가깝다.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {QueryCounter.PROPERTY, SequenceRoundTripBenchmark.STATISTICS})
+class SequenceRoundTripBenchmark {
+
+    static final String STATISTICS = "spring.jpa.properties.hibernate.generate_statistics=true";
+    static final int ORDERS = 1000;
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired OrderService orderService;
+    @Autowired OrderBulkService orderBulkService;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void singleOrders() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("시퀀스회원");
+        Long itemId = fixtures.saveBook("시퀀스 JPA", 10000, ORDERS);
+
+        //when
+        QueryCounter.clear();
+        statistics().clear();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            orderService.order(memberId, itemId, 1);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        //then
+        report("OrderService.order", elapsed);
+    }
+
+    @Test
+    public void bulkOrders() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("시퀀스회원");
+        Long itemId = fixtures.saveBook("시퀀스 JPA", 10000, ORDERS);
+
+        List<BulkOrder> bulkOrders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            bulkOrders.add(BulkOrder.of(i + 1, memberId, List.of(new OrderLine(itemId, 1))));
+        }
+
+        //when
+        QueryCounter.clear();
+        statistics().clear();
+        long begin = System.nanoTime();
+        BulkOrderResult result = orderBulkService.order(bulkOrders.iterator());
+        long elapsed = System.nanoTime() - begin;
+
+        //then
+        assertEquals(ORDERS, result.getSucceeded());
+        report("OrderBulkService.order", elapsed);
+    }
+
+    private void report(String name, long elapsedNanos) {
+        long rows = statistics().getEntityInsertCount();
+        long insertStatements = QueryCounter.count(QueryCounter::isInsert);
+        long sequenceCalls = QueryCounter.count(QueryCounter::isSequenceCall);
+
+        //주문 한건에 order, delivery, order_item, order_summary 4건 insert
+        assertEquals(ORDERS * 4L, rows);
+        System.out.printf("[%s, %s] orders=%d inserted rows=%d insert statements=%d sequence calls=%d elapsed=%dms%n",
+                name(), name, ORDERS, rows, insertStatements, sequenceCalls, elapsedNanos / 1_000_000);
+        verifySequenceCalls(rows, sequenceCalls);
+    }
+
+    String name() {
+        return "pooled-lo";
+    }
+
+    void verifySequenceCalls(long rows, long sequenceCalls) {
+        assertTrue(sequenceCalls * 10 <= rows, "시퀀스 조회는 insert 수보다 훨씬 적어야 한다.");
+    }
+
+    private Statistics statistics() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+}
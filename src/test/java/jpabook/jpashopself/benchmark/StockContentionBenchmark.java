@@ -0,0 +1,106 @@
+package jpabook.jpashopself.benchmark;
+
+import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.repository.ItemRepository;
+import jpabook.jpashopself.repository.ShardedStockManager;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 한 상품에 동시 주문이 몰릴때 재고 차감 처리량 비교
+ * - single-row: item row 하나에 조건부 update (ItemRepository)
+ * - sharded: 재고를 N개 row 로 나눠서 조건부 update (ShardedStockManager)
+ */
+@Tag("benchmark")
+@SpringBootTest
+class StockContentionBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int ORDERS_PER_THREAD = 300;
+
+    @Autowired EntityManager em;
+    @Autowired ItemRepository itemRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void singleRow() throws Exception {
+        run("single-row", itemRepository);
+    }
+
+    @Test
+    public void sharded() throws Exception {
+        run("sharded(8)", new ShardedStockManager(em, 8));
+    }
+
+    private void run(String name, StockManager stockManager) throws Exception {
+
+        //given
+        int initialStock = THREADS * ORDERS_PER_THREAD;
+        Long itemId = fixtures.saveBook("인기 상품", 10000, initialStock);
+        //샤드 생성은 측정에서 제외
+        transactionTemplate.executeWithoutResult(status ->
+                stockManager.changeStock(em.find(Item.class, itemId), initialStock));
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int failures = 0;
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status ->
+                                stockManager.removeStock(em.find(Item.class, itemId), 1));
+                    } catch (RuntimeException e) {
+                        failures++;
+                    }
+                }
+                return failures;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        int failures = 0;
+        for (Future<Integer> result : results) {
+            failures += result.get();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        executor.shutdown();
+
+        //then
+        int succeeded = THREADS * ORDERS_PER_THREAD - failures;
+        Integer remain = transactionTemplate.execute(status -> {
+            Item item = em.find(Item.class, itemId);
+            stockManager.refreshStock(Collections.singletonList(item));
+            return item.getStockQuantity();
+        });
+
+        System.out.printf("[%s] threads=%d orders=%d failures=%d elapsed=%dms throughput=%.0f orders/s%n",
+                name, THREADS, succeeded, failures, elapsedMillis, succeeded * 1000.0 / Math.max(elapsedMillis, 1));
+        assertEquals(initialStock - succeeded, remain, "성공한 주문 수만큼만 재고가 줄어야 한다.");
+    }
+}
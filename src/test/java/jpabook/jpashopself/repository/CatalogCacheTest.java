@@ -0,0 +1,158 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.item.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 트랜잭션 밖에서 invalidate 하면 바로 반영된다. (TransactionCallbacks)
+ */
+class CatalogCacheTest {
+
+    CatalogCache catalogCache = new CatalogCache();
+
+    List<ItemSnapshot> items = new ArrayList<>(Arrays.asList(snapshot(1L, "JPA1", 10), snapshot(2L, "JPA2", 20)));
+    AtomicInteger fullLoads = new AtomicInteger();
+    List<Collection<Long>> partialLoads = new ArrayList<>();
+
+    @Test
+    public void 두번째_조회부터는_캐시에서_읽는다() {
+        //when
+        get();
+        List<ItemSnapshot> result = get();
+
+        //then
+        assertEquals(1, fullLoads.get());
+        assertEquals(2, result.size());
+        CatalogCacheMetrics metrics = catalogCache.metrics();
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+    }
+
+    @Test
+    public void 재고가_바뀐_상품만_다시_읽는다() {
+        //given
+        get();
+        items.set(1, snapshot(2L, "JPA2", 19));
+
+        //when
+        catalogCache.invalidate(Collections.singletonList(2L));
+        List<ItemSnapshot> result = get();
+
+        //then
+        assertEquals(1, fullLoads.get(), "전체 목록은 다시 읽지 않는다.");
+        assertEquals(Collections.singletonList(Collections.singletonList(2L)), partialLoads);
+        assertEquals(Arrays.asList(1L, 2L), ids(result), "상품 id 순서는 유지된다.");
+        assertEquals(19, result.get(1).getStockQuantity());
+    }
+
+    @Test
+    public void 상품등록은_전체를_다시_읽는다() {
+        //given
+        get();
+        items.add(snapshot(3L, "JPA3", 30));
+
+        //when
+        catalogCache.invalidateAll();
+        List<ItemSnapshot> result = get();
+
+        //then
+        assertEquals(2, fullLoads.get());
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(result));
+    }
+
+    @Test
+    public void 읽는_중에_무효화되면_캐시에_남기지_않는다() {
+        //when - 읽는 도중에 상품이 등록됨
+        catalogCache.get(() -> {
+            fullLoads.incrementAndGet();
+            catalogCache.invalidateAll();
+            return new ArrayList<>(items);
+        }, this::loadByIds);
+        get();
+
+        //then
+        assertEquals(2, fullLoads.get(), "무효화 전에 읽은 목록은 다음 조회에 쓰지 않는다.");
+    }
+
+    @Test
+    public void 동시에_조회해도_한번만_읽는다() throws Exception {
+        //given
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        //when
+        List<Future<List<ItemSnapshot>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return catalogCache.get(() -> {
+                    fullLoads.incrementAndGet();
+                    sleep(100);
+                    return new ArrayList<>(items);
+                }, this::loadByIds);
+            }));
+        }
+        start.countDown();
+        for (Future<List<ItemSnapshot>> future : futures) {
+            assertEquals(2, future.get(5, TimeUnit.SECONDS).size());
+        }
+        executor.shutdown();
+
+        //then
+        assertEquals(1, fullLoads.get());
+        assertEquals(threads - 1, catalogCache.metrics().getHits());
+    }
+
+    private List<ItemSnapshot> get() {
+        return catalogCache.get(() -> {
+            fullLoads.incrementAndGet();
+            return new ArrayList<>(items);
+        }, this::loadByIds);
+    }
+
+    private List<ItemSnapshot> loadByIds(Collection<Long> ids) {
+        partialLoads.add(new ArrayList<>(ids));
+        return items.stream()
+                .filter(item -> ids.contains(item.getId()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<ItemSnapshot> snapshots) {
+        return snapshots.stream()
+                .map(ItemSnapshot::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static ItemSnapshot snapshot(Long id, String name, int stockQuantity) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        return ItemSnapshot.of(book);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MemberNameIndexTest {
+
+    @Autowired MemberNameIndex memberNameIndex;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 롤백되면_트랜잭션_전_이름으로_되돌린다() throws Exception {
+
+        //given
+        Long memberId = -System.nanoTime();
+        String original = "original " + UUID.randomUUID();
+        String joined = "joined " + UUID.randomUUID();
+        memberNameIndex.put(memberId, original);
+
+        //when - 한 트랜잭션에서 두번 바꾸고 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            memberNameIndex.put(memberId, "first " + joined);
+            memberNameIndex.put(memberId, "second " + joined);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertTrue(memberNameIndex.search(original).contains(memberId), "처음 이름으로 되돌아가야 한다.");
+        assertFalse(memberNameIndex.search(joined).contains(memberId), "중간 이름이 남으면 안된다.");
+    }
+
+    @Test
+    public void 롤백되면_가입한_회원은_지운다() throws Exception {
+
+        //given
+        Long memberId = -System.nanoTime();
+        String name = "joined " + UUID.randomUUID();
+
+        //when - 가입 후 같은 트랜잭션에서 이름 변경, 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            memberNameIndex.put(memberId, name);
+            memberNameIndex.put(memberId, "renamed " + name);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertTrue(memberNameIndex.search(name).isEmpty());
+    }
+
+    @Test
+    public void 채우기_전에_바꾼_이름도_롤백되면_되돌린다() throws Exception {
+
+        //given - 아직 DB 에서 채우지 않은 인덱스
+        String original = "original " + UUID.randomUUID();
+        String renamed = "renamed " + UUID.randomUUID();
+        Long memberId = fixtures.saveMember(original);
+        MemberNameIndex index = new MemberNameIndex(em, transactionManager);
+
+        //when - 이름을 바꾸고 flush 한 뒤 인덱스에 반영, 롤백
+        transactionTemplate.executeWithoutResult(status -> {
+            em.find(Member.class, memberId).setName(renamed);
+            em.flush();
+            index.put(memberId, renamed);
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertTrue(index.search(original).contains(memberId), "DB 에 커밋된 이름으로 되돌아가야 한다.");
+        assertFalse(index.search(renamed).contains(memberId));
+    }
+}
@@ -0,0 +1,106 @@
+package jpabook.jpashopself.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashopself.domain.OrderStatus;
+import jpabook.jpashopself.repository.order.query.OrderQueryDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 트랜잭션 밖에서 evict 하면 바로 반영된다. (TransactionCallbacks)
+ */
+class OrderJsonCacheTest {
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    List<List<Long>> loads = new ArrayList<>();
+
+    @Test
+    public void 같은_버전은_직렬화된_조각을_다시_쓴다() throws Exception {
+        //given
+        OrderJsonCache cache = new OrderJsonCache(objectMapper, 1024 * 1024);
+        Map<Long, Long> versions = versions(1L, 0L, 2L, 0L);
+
+        //when
+        List<byte[]> first = cache.get(versions, this::load);
+        List<byte[]> second = cache.get(versions, this::load);
+
+        //then
+        assertEquals(1, loads.size(), "두번째 조회는 DTO 를 만들지 않는다.");
+        assertSame(first.get(0), second.get(0));
+        assertEquals(objectMapper.writeValueAsString(order(1L)), new String(second.get(0), StandardCharsets.UTF_8));
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    public void 버전이_바뀐_주문과_제거된_주문만_다시_만든다() {
+        //given
+        OrderJsonCache cache = new OrderJsonCache(objectMapper, 1024 * 1024);
+        cache.get(versions(1L, 0L, 2L, 0L, 3L, 0L), this::load);
+
+        //when
+        cache.evict(Collections.singletonList(3L));
+        cache.get(versions(1L, 0L, 2L, 1L, 3L, 0L), this::load);
+
+        //then
+        assertEquals(List.of(2L, 3L), loads.get(1));
+    }
+
+    @Test
+    public void 최대_크기를_넘으면_오래_안쓴_조각부터_지운다() {
+        //given - 조각 두개만 들어가는 크기
+        int fragmentSize = cacheSize(1L);
+        OrderJsonCache cache = new OrderJsonCache(objectMapper, fragmentSize * 2 + fragmentSize / 2);
+        cache.get(versions(1L, 0L), this::load);
+        cache.get(versions(2L, 0L), this::load);
+        cache.get(versions(1L, 0L), this::load); //1번을 최근에 사용
+
+        //when
+        cache.get(versions(3L, 0L), this::load);
+        loads.clear();
+        cache.get(versions(1L, 0L, 2L, 0L, 3L, 0L), this::load);
+
+        //then
+        assertEquals(List.of(List.of(2L)), loads, "가장 오래 안쓴 2번이 지워져야 한다.");
+        assertTrue(cache.bytes() <= fragmentSize * 2 + fragmentSize / 2);
+    }
+
+    private int cacheSize(Long orderId) {
+        OrderJsonCache cache = new OrderJsonCache(objectMapper, Long.MAX_VALUE);
+        cache.get(versions(orderId, 0L), this::load);
+        loads.clear();
+        return (int) cache.bytes();
+    }
+
+    private List<OrderQueryDto> load(List<Long> orderIds) {
+        loads.add(new ArrayList<>(orderIds));
+        return orderIds.stream()
+                .map(OrderJsonCacheTest::order)
+                .collect(Collectors.toList());
+    }
+
+    private static Map<Long, Long> versions(Long... idAndVersions) {
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        for (int i = 0; i < idAndVersions.length; i += 2) {
+            versions.put(idAndVersions[i], idAndVersions[i + 1]);
+        }
+        return versions;
+    }
+
+    private static OrderQueryDto order(Long orderId) {
+        OrderQueryDto order = new OrderQueryDto(orderId, "회원" + orderId, LocalDateTime.of(2020, 1, 1, 12, 0),
+                OrderStatus.ORDER, null, 10000, 1);
+        order.setOrderItems(Collections.emptyList());
+        return order;
+    }
+}
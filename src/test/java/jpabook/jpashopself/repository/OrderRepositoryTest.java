@@ -0,0 +1,212 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.*;
+import jpabook.jpashopself.domain.item.Book;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.service.MemberService;
+import jpabook.jpashopself.support.TestFixtures;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+class OrderRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired OrderRepository orderRepository;
+    @Autowired StockManager stockManager;
+    @Autowired MemberService memberService;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void keyset_페이징() {
+        //given - 주문시간이 같은 주문도 섞여 있다
+        Member member = fixtures.createMember("페이징회원");
+
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < 7; i++) {
+            Order order = Order.createOrder(member, Delivery.createDelivery(member.getAddress()));
+            order.setOrderDate(base.plusMinutes(i / 2));
+            em.persist(order);
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<Long> orderIds = new ArrayList<>();
+        List<Order> page = orderRepository.findAllWithMemberDelivery(null, null, 3);
+        while (!page.isEmpty()) {
+            page.forEach(o -> orderIds.add(o.getId()));
+            Order last = page.get(page.size() - 1);
+            page = orderRepository.findAllWithMemberDelivery(last.getOrderDate(), last.getId(), 3);
+        }
+
+        //then
+        List<Long> expected = em.createQuery("select o.id from Order o order by o.orderDate desc, o.id desc", Long.class)
+                .getResultList();
+
+        assertEquals(expected, orderIds, "주문시간, id 역순으로 빠짐없이 중복없이 조회되어야 한다.");
+    }
+
+    @Test
+    public void 주문상품_fetch_join_2단계_페이징() {
+        //given
+        Member member = fixtures.createMember("2단계회원");
+
+        Book book1 = fixtures.createBook("2단계 JPA1", 10000, 100);
+        Book book2 = fixtures.createBook("2단계 JPA2", 10000, 100);
+        for (int i = 0; i < 5; i++) {
+            em.persist(Order.createOrder(member, Delivery.createDelivery(member.getAddress()),
+                    OrderItem.createOrderItem(book1, 10000, 1, stockManager),
+                    OrderItem.createOrderItem(book2, 20000, 1, stockManager)));
+        }
+        em.flush();
+        em.clear();
+
+        List<Long> allIds = em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .getResultList();
+
+        //when
+        List<Order> page = orderRepository.findAllWithItem(1, 3);
+
+        //then
+        assertEquals(allIds.subList(1, 4), page.stream().map(Order::getId).collect(Collectors.toList()),
+                "주문 id 한 페이지가 순서대로 중복없이 조회되어야 한다.");
+        for (Order order : page) {
+            assertTrue(Hibernate.isInitialized(order.getOrderItems()), "주문상품은 fetch join 으로 같이 조회된다.");
+        }
+    }
+
+    @Test
+    public void 주문검색_페이징과_전체건수() {
+        //given
+        Member member = createMember("검색회원");
+
+        LocalDateTime base = LocalDateTime.of(2019, 3, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            Order order = Order.createOrder(member, Delivery.createDelivery(member.getAddress()));
+            order.setOrderDate(base.plusDays(i));
+            em.persist(order);
+        }
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("검색회원");
+        orderSearch.setFromDate(LocalDate.of(2019, 3, 2));
+        orderSearch.setToDate(LocalDate.of(2019, 3, 5));
+        orderSearch.setSize(3);
+
+        //when
+        Page<Order> first = orderRepository.findPage(orderSearch);
+        orderSearch.setPage(1);
+        Page<Order> second = orderRepository.findPage(orderSearch);
+
+        //then
+        assertEquals(4, first.getTotalElements(), "주문일 범위는 양 끝 날짜를 포함한다.");
+        assertEquals(2, first.getTotalPages());
+        assertEquals(LocalDateTime.of(2019, 3, 5, 12, 0), first.getContent().get(0).getOrderDate(), "기본 정렬은 최근 주문순");
+        assertEquals(1, second.getContent().size());
+        assertEquals(LocalDateTime.of(2019, 3, 2, 12, 0), second.getContent().get(0).getOrderDate());
+    }
+
+    @Test
+    public void 주문금액_정렬과_범위검색() {
+        //given
+        Member member = createMember("금액회원");
+        Book book = fixtures.createBook("금액 JPA", 10000, 100);
+        int[] counts = {1, 3, 2};
+        for (int count : counts) {
+            OrderItem orderItem = OrderItem.createOrderItem(book, 10000, count, stockManager);
+            em.persist(Order.createOrder(member, Delivery.createDelivery(member.getAddress()), orderItem));
+        }
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("금액회원");
+        orderSearch.setMinTotalPrice(20000);
+        orderSearch.setSort(OrderSort.TOTAL_PRICE_DESC);
+
+        //when
+        List<Order> orders = orderRepository.findPage(orderSearch).getContent();
+
+        //then
+        assertEquals(2, orders.size(), "주문 가격 합계가 범위 안인 주문만 조회되어야 한다.");
+        assertEquals(30000, orders.get(0).getTotalPrice());
+        assertEquals(3, orders.get(0).getItemCount());
+        assertEquals(20000, orders.get(1).getTotalPrice());
+        for (Order order : orders) {
+            assertFalse(Hibernate.isInitialized(order.getOrderItems()), "주문 가격 합계를 보는데 주문상품을 읽지 않아야 한다.");
+        }
+    }
+
+    @Test
+    public void 주문검색_회원이름_부분검색() {
+        //given
+        Member kim = createMember("Kim Younghan");
+        Member lee = createMember("Lee Younghee");
+        for (Member member : new Member[]{kim, lee}) {
+            em.persist(Order.createOrder(member, Delivery.createDelivery(member.getAddress())));
+        }
+        em.flush();
+        em.clear();
+
+        //when
+        List<Order> younghan = search("younghan");
+        List<Order> young = search("YOUNG");
+        List<Order> none = search("park");
+
+        //then
+        assertEquals(1, younghan.size(), "이름 중간 부분으로 검색되어야 한다.");
+        assertEquals(kim.getId(), younghan.get(0).getMember().getId());
+        assertEquals(2, young.size(), "대소문자는 구분하지 않는다.");
+        assertTrue(none.isEmpty());
+
+        //이름 변경 후에는 새 이름으로 검색된다
+        memberService.update(kim.getId(), "Park Jisung");
+        em.flush();
+        em.clear();
+        assertEquals(1, search("park").size());
+        assertTrue(search("younghan").isEmpty());
+    }
+
+    private List<Order> search(String memberName) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(memberName);
+        return orderRepository.findAll(orderSearch);
+    }
+
+    /**
+     * 회원 이름 인덱스에도 등록되도록 회원가입으로 만든다.
+     */
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberService.join(member);
+        return member;
+    }
+}
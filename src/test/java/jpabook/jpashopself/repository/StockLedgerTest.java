@@ -0,0 +1,92 @@
+package jpabook.jpashopself.repository;
+
+import jpabook.jpashopself.domain.item.Item;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 재고 원장 모드. 자동 flush 는 테스트 중에 돌지 않도록 주기를 길게 둔다.
+ */
+@SpringBootTest(properties = {"jpashop.stock.mode=ledger", "jpashop.stock.ledger.flush-interval-ms=3600000"})
+class StockLedgerTest {
+
+    @Autowired EntityManager em;
+    @Autowired StockLedger stockLedger;
+    @Autowired ItemRepository itemRepository;
+    @Autowired CatalogCache catalogCache;
+    @Autowired OrderService orderService;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 재시작해도_반영전_차감이_남는다() throws Exception {
+
+        //given - 주문은 커밋됐지만 item 에는 아직 반영되지 않은 상태
+        Long memberId = fixtures.saveMember("원장회원");
+        Long itemId = fixtures.saveBook("원장 JPA", 10000, 10);
+        orderService.order(memberId, itemId, 3);
+        assertEquals(10, findStock(itemId), "flush 전에는 item 재고가 그대로다.");
+
+        //when - 비정상 종료 후 재시작 (카운터가 비어 있는 원장)
+        StockLedger restarted = new StockLedger(itemRepository, em, transactionTemplate, catalogCache);
+
+        //then
+        assertThrows(NotEnoughStockException.class, () -> transactionTemplate.executeWithoutResult(status ->
+                restarted.removeStock(em.find(Item.class, itemId), 8)), "커밋된 차감을 빼고 7개만 남아야 한다.");
+        transactionTemplate.executeWithoutResult(status -> restarted.removeStock(em.find(Item.class, itemId), 7));
+    }
+
+    @Test
+    public void flush_는_기록을_item_에_반영하고_지운다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("원장회원");
+        Long itemId = fixtures.saveBook("원장 JPA", 10000, 10);
+        orderService.order(memberId, itemId, 2);
+        orderService.order(memberId, itemId, 3);
+
+        //when
+        stockLedger.flush();
+
+        //then
+        assertEquals(5, findStock(itemId));
+        Long journals = em.createQuery("select count(j) from StockJournal j where j.itemId = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+        assertEquals(0, journals, "반영한 기록은 지워야 한다.");
+    }
+
+    @Test
+    public void 롤백된_차감은_남지_않는다() throws Exception {
+
+        //given
+        Long itemId = fixtures.saveBook("원장 JPA", 10000, 10);
+
+        //when
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            stockLedger.removeStock(em.find(Item.class, itemId), 4);
+            throw new IllegalStateException("롤백");
+        }));
+
+        //then
+        transactionTemplate.executeWithoutResult(status -> stockLedger.removeStock(em.find(Item.class, itemId), 10));
+    }
+
+    private int findStock(Long itemId) {
+        return em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", itemId)
+                .getSingleResult();
+    }
+}
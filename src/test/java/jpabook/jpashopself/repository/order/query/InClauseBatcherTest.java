@@ -0,0 +1,48 @@
+package jpabook.jpashopself.repository.order.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InClauseBatcherTest {
+
+    @Test
+    public void chunk_크기를_2의_거듭제곱으로_채운다() {
+        //given
+        InClauseBatcher batcher = new InClauseBatcher(null, 8, 1);
+        List<Long> ids = LongStream.rangeClosed(1, 19).boxed().collect(Collectors.toList());
+
+        //when
+        List<Integer> sizes = new ArrayList<>();
+        List<Long> fetched = batcher.fetch(ids, chunk -> {
+            sizes.add(chunk.size());
+            return chunk;
+        });
+
+        //then
+        assertEquals(List.of(8, 8, 4), sizes, "8, 8, 3 -> 4 로 채운다.");
+        assertEquals(new HashSet<>(ids), new HashSet<>(fetched), "채운 값은 chunk 의 마지막 id 를 반복한다.");
+        assertEquals(List.of(17L, 18L, 19L, 19L), fetched.subList(16, 20));
+    }
+
+    @Test
+    public void SQL_모양은_몇가지로_고정된다() {
+        InClauseBatcher batcher = new InClauseBatcher(null, 500, 1);
+
+        Set<Integer> shapes = new HashSet<>();
+        for (int n = 1; n <= 2000; n++) {
+            List<Long> ids = LongStream.rangeClosed(1, n).boxed().collect(Collectors.toList());
+            batcher.chunks(ids).forEach(chunk -> shapes.add(chunk.size()));
+        }
+
+        assertEquals(Set.of(1, 2, 4, 8, 16, 32, 64, 128, 256, 500), shapes);
+        assertTrue(batcher.fetch(List.of(), chunk -> chunk).isEmpty(), "id 가 없으면 쿼리하지 않는다.");
+    }
+}
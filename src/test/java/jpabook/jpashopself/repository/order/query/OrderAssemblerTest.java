@@ -0,0 +1,76 @@
+package jpabook.jpashopself.repository.order.query;
+
+import jpabook.jpashopself.domain.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderAssemblerTest {
+
+    @Test
+    public void LongObjectMap_확장() {
+        LongObjectMap<String> map = new LongObjectMap<>(2);
+        for (long key = -500; key < 500; key++) {
+            map.put(key * 1024, "v" + key);
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals("v-500", map.get(-500 * 1024));
+        assertEquals("v0", map.get(0));
+        assertEquals("v499", map.get(499 * 1024));
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void 주문상품_붙이기_주문순서유지() {
+        List<OrderQueryDto> orders = Arrays.asList(order(3L), order(1L), order(2L));
+        List<OrderItemQueryDto> items = Arrays.asList(item(1L, "A"), item(3L, "B"), item(1L, "C"));
+
+        List<OrderQueryDto> result = OrderAssembler.attachItems(orders, OrderQueryDto::getOrderId,
+                items, OrderItemQueryDto::getOrderId, OrderQueryDto::setOrderItems);
+
+        assertEquals(Arrays.asList(3L, 1L, 2L), ids(result));
+        assertEquals(Arrays.asList("B"), names(result.get(0).getOrderItems()));
+        assertEquals(Arrays.asList("A", "C"), names(result.get(1).getOrderItems()));
+        assertTrue(result.get(2).getOrderItems().isEmpty(), "주문상품이 없으면 빈 목록이다.");
+    }
+
+    @Test
+    public void flat_row_묶기() {
+        List<OrderFlatDto> flats = Arrays.asList(flat(1L, "A"), flat(1L, "B"), flat(2L, "C"), flat(1L, "D"));
+
+        List<OrderQueryDto> result = OrderAssembler.groupFlat(flats, OrderFlatDto::getOrderId,
+                o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()),
+                OrderQueryDto::setOrderItems);
+
+        assertEquals(Arrays.asList(1L, 2L), ids(result), "주문은 처음 나온 순서대로 담긴다.");
+        assertEquals(Arrays.asList("A", "B", "D"), names(result.get(0).getOrderItems()));
+        assertEquals(Arrays.asList("C"), names(result.get(1).getOrderItems()));
+    }
+
+    private OrderQueryDto order(Long orderId) {
+        return new OrderQueryDto(orderId, "회원", LocalDateTime.now(), OrderStatus.ORDER, null);
+    }
+
+    private OrderItemQueryDto item(Long orderId, String itemName) {
+        return new OrderItemQueryDto(orderId, itemName, 1000, 1);
+    }
+
+    private OrderFlatDto flat(Long orderId, String itemName) {
+        return new OrderFlatDto(orderId, "회원", LocalDateTime.now(), OrderStatus.ORDER, null, itemName, 1000, 1);
+    }
+
+    private List<Long> ids(List<OrderQueryDto> orders) {
+        return orders.stream().map(OrderQueryDto::getOrderId).collect(Collectors.toList());
+    }
+
+    private List<String> names(List<OrderItemQueryDto> items) {
+        return items.stream().map(OrderItemQueryDto::getItemName).collect(Collectors.toList());
+    }
+}
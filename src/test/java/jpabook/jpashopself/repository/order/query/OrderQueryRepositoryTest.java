@@ -0,0 +1,72 @@
+package jpabook.jpashopself.repository.order.query;
+
+import jpabook.jpashopself.domain.*;
+import jpabook.jpashopself.domain.item.Book;
+import jpabook.jpashopself.domain.item.StockManager;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+class OrderQueryRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired OrderQueryRepository orderQueryRepository;
+    @Autowired StockManager stockManager;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 스트리밍_조회는_전체_조회와_같다() {
+        //given
+        Member member = fixtures.createMember("내보내기회원");
+
+        Book book1 = fixtures.createBook("내보내기 JPA1", 10000, 100);
+        Book book2 = fixtures.createBook("내보내기 JPA2", 10000, 100);
+        for (int i = 0; i < 5; i++) {
+            em.persist(Order.createOrder(member, Delivery.createDelivery(member.getAddress()),
+                    OrderItem.createOrderItem(book1, 10000, 1, stockManager),
+                    OrderItem.createOrderItem(book2, 20000, 2, stockManager)));
+        }
+        em.flush();
+        em.clear();
+
+        List<OrderQueryDto> expected = new ArrayList<>(orderQueryRepository.findAllByDto_optimization());
+        expected.sort(Comparator.comparing(OrderQueryDto::getOrderId));
+
+        //when - chunk 경계가 주문 중간에 걸리도록 작은 chunk 사용
+        List<OrderQueryDto> chunked = new ArrayList<>();
+        orderQueryRepository.streamAllByDto_optimization(2, chunked::add);
+        List<OrderQueryDto> flat = new ArrayList<>();
+        orderQueryRepository.streamAllByDto_flat(2, flat::add);
+
+        //then
+        assertEquals(expected.size(), chunked.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getOrderId(), chunked.get(i).getOrderId());
+            assertEquals(expected.get(i).getOrderItems(), chunked.get(i).getOrderItems(), "주문상품이 같아야 한다.");
+        }
+        assertEquals(expected.size(), flat.size(), "flat row 는 주문 한 건으로 묶여야 한다.");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getOrderItems().size(), flat.get(i).getOrderItems().size());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package jpabook.jpashopself.repository.order.simplequery;
+
+import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.domain.OrderStatus;
+import jpabook.jpashopself.domain.item.Book;
+import jpabook.jpashopself.service.MemberService;
+import jpabook.jpashopself.service.OrderService;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@Transactional
+class OrderSummaryRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired OrderSummaryRepository orderSummaryRepository;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 주문_회원이름변경_취소가_요약에_반영된다() {
+        //given
+        Member member = fixtures.createMember("요약회원");
+        Book book = fixtures.createBook("요약 JPA", 10000, 10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        memberService.update(member.getId(), "요약회원2");
+        orderService.cancelOrder(orderId);
+        em.flush();
+
+        //then
+        OrderSimpleQueryDto summary = findSummary(orderId);
+        assertEquals("요약회원2", summary.getName(), "회원 이름 변경이 요약에 반영되어야 한다.");
+        assertEquals(OrderStatus.CANCEL, summary.getOrderStatus(), "주문 취소가 요약에 반영되어야 한다.");
+        assertEquals("서울", summary.getAddress().getCity());
+    }
+
+    @Test
+    public void 어긋난_요약은_검사에서_찾고_재생성으로_맞춘다() {
+        //given
+        Member member = fixtures.createMember("검사회원");
+        Long orderId = orderService.order(member.getId(), fixtures.createBook("검사 JPA", 10000, 10).getId(), 1);
+        em.flush();
+
+        //요약 경로를 거치지 않고 요약을 직접 고친다
+        em.createNativeQuery("update order_summary set member_name = '다른이름' where order_id = ?")
+                .setParameter(1, orderId)
+                .executeUpdate();
+
+        //when
+        OrderSummaryCheck before = orderSummaryRepository.check();
+        orderSummaryRepository.rebuild();
+        OrderSummaryCheck after = orderSummaryRepository.check();
+
+        //then
+        assertTrue(before.getStaleIds().contains(orderId));
+        assertTrue(after.isConsistent(), "재생성 후에는 요약이 주문 원본과 같아야 한다.");
+        assertEquals("검사회원", findSummary(orderId).getName());
+    }
+
+    private OrderSimpleQueryDto findSummary(Long orderId) {
+        return orderSummaryRepository.findOrderDtos().stream()
+                .filter(dto -> dto.getOrderId().equals(orderId))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("주문 요약이 없습니다. orderId=" + orderId));
+    }
+}
@@ -0,0 +1,159 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.IdempotencyKey;
+import jpabook.jpashopself.exception.DuplicateRequestException;
+import jpabook.jpashopself.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class IdempotencyServiceTest {
+
+    @Autowired IdempotencyService idempotencyService;
+    @Autowired IdempotencyKeyRepository idempotencyKeyRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired EntityManager em;
+
+    @Test
+    public void 같은키_재시도는_한번만_실행() throws Exception {
+
+        //given
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executed = new AtomicInteger();
+
+        //when
+        Long first = idempotencyService.execute("order", key, () -> (long) executed.incrementAndGet());
+        Long retry = idempotencyService.execute("order", key, () -> (long) executed.incrementAndGet());
+
+        //then
+        assertEquals(1, executed.get(), "같은 키의 재시도는 다시 실행되지 않아야 한다.");
+        assertEquals(first, retry, "재시도는 처음 결과를 돌려받아야 한다.");
+        assertEquals(2L, idempotencyService.execute("member", key, () -> (long) executed.incrementAndGet()),
+                "기능이 다르면 다른 키다.");
+    }
+
+    @Test
+    public void 동시에_들어온_같은키는_처음_결과를_기다린다() throws Exception {
+
+        //given
+        String key = UUID.randomUUID().toString();
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return idempotencyService.execute("order", key, () -> {
+                    executed.incrementAndGet();
+                    sleep(100);
+                    return 42L;
+                });
+            }));
+        }
+        start.countDown();
+
+        //then
+        for (Future<Long> result : results) {
+            assertEquals(42L, result.get());
+        }
+        assertEquals(1, executed.get(), "동시에 들어온 같은 키는 한번만 실행되어야 한다.");
+        executor.shutdown();
+    }
+
+    @Test
+    public void 실패한_요청은_같은키로_다시_실행() throws Exception {
+
+        //given
+        String key = UUID.randomUUID().toString();
+
+        //when
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("order", key, () -> {
+            throw new IllegalStateException("실패");
+        }));
+        Long retry = idempotencyService.execute("order", key, () -> 7L);
+
+        //then
+        assertEquals(7L, retry, "실패한 요청의 키는 남지 않아야 한다.");
+    }
+
+    @Test
+    public void 임대가_끝난_처리중_키는_넘겨받아_실행() throws Exception {
+
+        //given - 처리 중에 서버가 죽어서 결과 없이 남은 키
+        String key = UUID.randomUUID().toString();
+        saveClaim("order:" + key, LocalDateTime.now().minusSeconds(1));
+
+        //when
+        Long retry = idempotencyService.execute("order", key, () -> 11L);
+
+        //then
+        assertEquals(11L, retry, "임대가 끝난 키는 재시도가 넘겨받아야 한다.");
+        assertEquals(11L, idempotencyKeyRepository.findById("order:" + key).get().getResultId());
+    }
+
+    @Test
+    public void 임대중인_처리중_키는_중복요청() throws Exception {
+
+        //given - 다른 서버에서 처리 중인 키
+        String key = UUID.randomUUID().toString();
+        saveClaim("order:" + key, LocalDateTime.now().plusMinutes(1));
+
+        //when
+        AtomicInteger executed = new AtomicInteger();
+
+        //then
+        assertThrows(DuplicateRequestException.class,
+                () -> idempotencyService.execute("order", key, () -> (long) executed.incrementAndGet()));
+        assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void 결과는_처리와_같은_트랜잭션에_기록() throws Exception {
+
+        //given
+        String key = UUID.randomUUID().toString();
+
+        //when
+        Boolean sameTransaction = idempotencyService.execute("order", key, () ->
+                TransactionSynchronizationManager.isActualTransactionActive() ? 1L : 0L) == 1L;
+
+        //then
+        assertTrue(sameTransaction, "처리는 결과 기록과 같은 트랜잭션에서 실행되어야 한다.");
+    }
+
+    private void saveClaim(String key, LocalDateTime leaseExpiresAt) {
+        transactionTemplate.executeWithoutResult(status ->
+                em.persist(IdempotencyKey.createKey(key, UUID.randomUUID().toString(), leaseExpiresAt)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class OrderBulkServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired OrderBulkService orderBulkService;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 대량주문_실패건은_건너뛴다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("대량회원");
+        Long itemId = fixtures.saveBook("대량 JPA", 10000, 5);
+
+        List<BulkOrder> bulkOrders = Arrays.asList(
+                BulkOrder.of(1, memberId, List.of(new OrderLine(itemId, 2))),
+                BulkOrder.of(2, memberId, List.of(new OrderLine(itemId, 10))),   //재고 부족
+                BulkOrder.of(3, -1L, List.of(new OrderLine(itemId, 1))),         //없는 회원
+                BulkOrder.invalid(4, "요청을 읽을 수 없습니다."),
+                BulkOrder.of(5, memberId, List.of(new OrderLine(itemId, 3))));
+
+        //when
+        BulkOrderResult result = orderBulkService.order(bulkOrders.iterator());
+
+        //then
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getSucceeded(), "실패한 건 외에는 모두 저장되어야 한다.");
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(2, 3, 4), result.getFailures().stream()
+                .map(BulkOrderResult.Failure::getLineNo)
+                .sorted()
+                .collect(Collectors.toList()));
+
+        Integer stock = em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", itemId)
+                .getSingleResult();
+        assertEquals(0, stock, "성공한 주문 수량만큼만 재고가 줄어야 한다.");
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import jpabook.jpashopself.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "jpashop.order.group-commit.enabled=true",
+        "jpashop.order.group-commit.window-ms=50",
+        "jpashop.order.group-commit.workers=1"})
+class OrderGroupCommitterTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired OrderGroupCommitter orderGroupCommitter;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 그룹커밋_실패한_주문만_실패() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("그룹회원");
+        Long itemId = fixtures.saveBook("그룹 JPA", 10000, 10);
+
+        //when - 동시에 들어온 주문 5건 중 1건은 재고 부족
+        int[] counts = {1, 2, 100, 3, 1};
+        ExecutorService executor = Executors.newFixedThreadPool(counts.length);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int count : counts) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return orderGroupCommitter.order(memberId, List.of(new OrderLine(itemId, count)));
+            }));
+        }
+        start.countDown();
+
+        //then
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 100) {
+                ExecutionException ex = assertThrows(ExecutionException.class, results.get(i)::get);
+                assertTrue(ex.getCause() instanceof NotEnoughStockException, "재고가 부족한 주문만 실패해야 한다.");
+            } else {
+                assertNotNull(results.get(i).get(), "같이 묶인 다른 주문은 저장되어야 한다.");
+            }
+        }
+        executor.shutdown();
+
+        Integer stock = em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", itemId)
+                .getSingleResult();
+        assertEquals(10 - 7, stock, "성공한 주문 수량만큼만 재고가 줄어야 한다.");
+    }
+}
@@ -0,0 +1,108 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.domain.Order;
+import jpabook.jpashopself.repository.OrderRepository;
+import jpabook.jpashopself.support.QueryCounter;
+import jpabook.jpashopself.support.TestFixtures;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 주문 등록 한 건에 나가는 SQL 수
+ * 주문이 많은 회원도 주문할때 member.orders 를 읽지 않아야 한다.
+ * (지금 매핑(mappedBy bag)은 읽지 않은 컬렉션에 add 해도 hibernate 가 모아뒀다가 처리하지만,
+ *  Order.setMember 는 컬렉션 종류와 상관없이 읽지 않은 컬렉션을 건드리지 않는다)
+ */
+@SpringBootTest(properties = QueryCounter.PROPERTY)
+class OrderQueryCountTest {
+
+    private static final int PREVIOUS_ORDERS = 30;
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 주문_한건의_SQL_수() throws Exception {
+
+        //given - 이미 주문이 많은 회원
+        Long memberId = fixtures.saveMember("회원1");
+        Long itemId = fixtures.saveBook("시골 JPA", 10000, PREVIOUS_ORDERS + 1);
+        for (int i = 0; i < PREVIOUS_ORDERS; i++) {
+            orderService.order(memberId, itemId, 1);
+        }
+
+        //when
+        QueryCounter.clear();
+        orderService.order(memberId, itemId, 1);
+
+        //then - 재고 차감은 jdbc 로 나가서 집계되지 않는다
+        assertEquals(0, QueryCounter.count(sql -> QueryCounter.isSelect(sql) && sql.toLowerCase().contains(" from orders ")),
+                "주문할때 회원의 기존 주문을 읽지 않아야 한다. " + QueryCounter.statements());
+        assertTrue(QueryCounter.count(sql -> QueryCounter.isSelect(sql) && !QueryCounter.isSequenceCall(sql)) <= 2,
+                "회원, 상품 조회만 나가야 한다. " + QueryCounter.statements());
+        assertEquals(4, QueryCounter.count(QueryCounter::isInsert),
+                "주문, 배송, 주문상품, 주문 요약 insert 만 나가야 한다. " + QueryCounter.statements());
+    }
+
+    @Test
+    public void 주문해도_회원_주문목록은_읽지_않는다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        Long itemId = fixtures.saveBook("시골 JPA", 10000, 10);
+        orderService.order(memberId, itemId, 1);
+
+        //when
+        boolean initialized = transactionTemplate.execute(status -> {
+            Long orderId = orderService.order(memberId, itemId, 1);
+            Order order = em.find(Order.class, orderId);
+            return Hibernate.isInitialized(order.getMember().getOrders());
+        });
+
+        //then
+        assertFalse(initialized);
+        Page<Order> page = transactionTemplate.execute(status -> orderRepository.findPageByMember(memberId, 0, 1));
+        assertEquals(2, page.getTotalElements(), "주문은 회원의 주문 이력 조회로 확인한다.");
+        assertEquals(1, page.getContent().size());
+    }
+
+    @Test
+    public void 이미_읽은_회원_주문목록에는_새_주문이_추가된다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        Long itemId = fixtures.saveBook("시골 JPA", 10000, 10);
+        orderService.order(memberId, itemId, 1);
+
+        //when - 같은 트랜잭션에서 회원의 주문 목록을 먼저 읽은 뒤 주문
+        List<Long> orderIds = transactionTemplate.execute(status -> {
+            Member member = em.find(Member.class, memberId);
+            assertEquals(1, member.getOrders().size());
+
+            orderService.order(memberId, itemId, 1);
+            return member.getOrders().stream()
+                    .map(Order::getId)
+                    .collect(Collectors.toList());
+        });
+
+        //then
+        assertEquals(2, orderIds.size(), "읽어둔 주문 목록도 새 주문과 맞춰져야 한다.");
+    }
+}
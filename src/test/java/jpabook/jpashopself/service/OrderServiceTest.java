@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,6 +66,49 @@ class OrderServiceTest {
         assertEquals(ex.getMessage(), "need more stock");
     }
 
+    @Test
+    public void 상품주문_재고수량초과_재고유지() throws Exception {
+
+        //given
+        Member member = createMember();
+        Item item = createBook("시골 JPA", 10000, 10);
+
+        //when
+        assertThrows(NotEnoughStockException.class, () -> {
+            orderService.order(member.getId(), item.getId(), 11);
+        });
+
+        //then
+        Integer stock = em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", item.getId())
+                .getSingleResult();
+        assertEquals(10, stock, "재고가 부족하면 DB 재고는 변하지 않아야 한다.");
+        assertEquals(10, item.getStockQuantity(), "재고가 부족하면 엔티티 재고도 변하지 않아야 한다.");
+    }
+
+    @Test
+    public void 장바구니주문() throws Exception {
+
+        //given
+        Member member = createMember();
+        Item item1 = createBook("시골 JPA", 10000, 10);
+        Item item2 = createBook("도시 JPA", 20000, 10);
+
+        //when
+        Long orderId = orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(item2.getId(), 1),
+                new OrderLine(item1.getId(), 2),
+                new OrderLine(item2.getId(), 3)));
+
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+
+        assertEquals(2, getOrder.getOrderItems().size(), "같은 상품은 한 줄로 합쳐져야 한다");
+        assertEquals(10000 * 2 + 20000 * 4, getOrder.getTotalPrice(), "주문 가격은 줄별 가격 * 수량의 합이다.");
+        assertEquals(8, item1.getStockQuantity(), "주문 수량만큼 재고가 줄어야한다.");
+        assertEquals(6, item2.getStockQuantity(), "주문 수량만큼 재고가 줄어야한다.");
+    }
+
     @Test
     public void 주문취소() {
         //given
@@ -84,9 +128,70 @@ class OrderServiceTest {
         assertEquals(OrderStatus.CANCEL, getOrder.getStatus(), "주문이 취소시 상태는 CANCEL 이다.");
     }
 
+    @Test
+    public void 주문_일괄취소() {
+        //given
+        Member member = createMember();
+        Item item1 = createBook("시골 JPA", 10000, 10);
+        Item item2 = createBook("도시 JPA", 20000, 10);
+
+        Long orderId1 = orderService.order(member.getId(), item1.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(item1.getId(), 3),
+                new OrderLine(item2.getId(), 1)));
+        Long delivered = orderService.order(member.getId(), item2.getId(), 4);
+        orderRepository.findOne(delivered).getDelivery().setStatus(DeliveryStatus.COMP);
+
+        //when
+        BulkCancelResult result = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, delivered, -1L));
+
+        //then
+        assertEquals(4, result.getRequested());
+        assertEquals(2, result.getCancelled(), "취소 가능한 주문만 취소되어야 한다.");
+        assertEquals(Arrays.asList(delivered, -1L), result.getSkippedIds());
+
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(delivered).getStatus(), "배송완료된 주문은 취소되지 않는다.");
+        assertEquals(10, findStock(item1.getId()), "취소된 주문 수량만큼 재고가 돌아와야 한다.");
+        assertEquals(6, findStock(item2.getId()), "배송완료된 주문의 재고는 돌아오지 않는다.");
+    }
+
+    @Test
+    public void 검색조건_일괄취소는_회원이름을_그대로_비교() {
+        //given
+        Member kim = createMember("kim");
+        Member kimchi = createMember("kimchi");
+        Item item = createBook("시골 JPA", 10000, 10);
+
+        Long kimOrder = orderService.order(kim.getId(), item.getId(), 1);
+        Long kimchiOrder = orderService.order(kimchi.getId(), item.getId(), 1);
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("kim");
+
+        //when
+        orderService.cancelOrders(orderSearch);
+
+        //then
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(kimOrder).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(kimchiOrder).getStatus(),
+                "이름 일부만 같은 회원의 주문은 취소되지 않아야 한다.");
+    }
+
+    private int findStock(Long itemId) {
+        return em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", itemId)
+                .getSingleResult();
+    }
+
     private Member createMember() {
+        return createMember("회원1");
+    }
+
+    private Member createMember(String name) {
         Member member = new Member();
-        member.setName("회원1");
+        member.setName(name);
         member.setAddress(new Address("서울", "강가", "123-123"));
         em.persist(member);
         return member;
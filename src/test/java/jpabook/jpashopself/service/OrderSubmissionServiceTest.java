@@ -0,0 +1,84 @@
+package jpabook.jpashopself.service;
+
+import jpabook.jpashopself.domain.OrderLine;
+import jpabook.jpashopself.exception.NotEnoughStockException;
+import jpabook.jpashopself.exception.OrderQueueFullException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderSubmissionServiceTest {
+
+    @Test
+    public void 비동기주문_접수표로_결과확인() throws Exception {
+
+        //given
+        OrderService orderService = mock(OrderService.class);
+        when(orderService.order(eq(1L), anyList())).thenReturn(100L);
+        when(orderService.order(eq(2L), anyList())).thenThrow(new NotEnoughStockException("need more stock"));
+        OrderSubmissionService submissionService = new OrderSubmissionService(orderService, 2, 10, 60_000);
+
+        //when
+        OrderTicket success = submissionService.submit(1L, List.of(new OrderLine(1L, 1)));
+        OrderTicket failure = submissionService.submit(2L, List.of(new OrderLine(1L, 1)));
+        success.getResult().get(5, TimeUnit.SECONDS);
+        failure.getResult().get(5, TimeUnit.SECONDS);
+
+        //then
+        assertEquals(OrderTicket.Status.COMPLETED, success.getStatus());
+        assertEquals(100L, success.getOrderId());
+        assertEquals(OrderTicket.Status.FAILED, failure.getStatus());
+        assertEquals("need more stock", failure.getMessage());
+        assertSame(success, submissionService.findTicket(success.getTicketId()).get());
+
+        OrderSubmissionMetrics metrics = submissionService.metrics();
+        assertEquals(2, metrics.getSubmitted());
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(1, metrics.getFailed());
+        submissionService.shutdown();
+    }
+
+    @Test
+    public void 대기열이_가득차면_거절() throws Exception {
+
+        //given - 작업 스레드 1개, 대기열 1개
+        CountDownLatch release = new CountDownLatch(1);
+        OrderService orderService = mock(OrderService.class);
+        when(orderService.order(any(), anyList())).thenAnswer(invocation -> {
+            release.await();
+            return 1L;
+        });
+        OrderSubmissionService submissionService = new OrderSubmissionService(orderService, 1, 1, 60_000);
+
+        OrderTicket running = submissionService.submit(1L, List.of(new OrderLine(1L, 1)));
+        waitUntilRunning(submissionService);
+        submissionService.submit(1L, List.of(new OrderLine(1L, 1)));
+
+        //when
+        assertThrows(OrderQueueFullException.class, () ->
+                submissionService.submit(1L, List.of(new OrderLine(1L, 1))));
+
+        //then
+        assertEquals(1, submissionService.metrics().getRejected());
+        assertEquals(1, submissionService.metrics().getQueueDepth());
+
+        release.countDown();
+        running.getResult().get(5, TimeUnit.SECONDS);
+        submissionService.shutdown();
+    }
+
+    private void waitUntilRunning(OrderSubmissionService submissionService) throws InterruptedException {
+        for (int i = 0; i < 500 && submissionService.metrics().getActiveWorkers() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
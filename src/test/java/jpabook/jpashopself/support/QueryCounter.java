@@ -0,0 +1,61 @@
+package jpabook.jpashopself.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * hibernate 가 실행하는 SQL 수집 (테스트용)
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector 에 등록해서 사용한다.
+ */
+public class QueryCounter implements StatementInspector {
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=jpabook.jpashopself.support.QueryCounter";
+
+    private static final List<String> statements = new ArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (statements) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    public static void clear() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    public static List<String> statements() {
+        synchronized (statements) {
+            return new ArrayList<>(statements);
+        }
+    }
+
+    public static long count() {
+        return count(sql -> true);
+    }
+
+    public static long count(Predicate<String> filter) {
+        return statements().stream()
+                .filter(filter)
+                .count();
+    }
+
+    public static boolean isSelect(String sql) {
+        return sql.trim().toLowerCase().startsWith("select");
+    }
+
+    public static boolean isInsert(String sql) {
+        return sql.trim().toLowerCase().startsWith("insert");
+    }
+
+    public static boolean isSequenceCall(String sql) {
+        return sql.toLowerCase().contains("next value for");
+    }
+}
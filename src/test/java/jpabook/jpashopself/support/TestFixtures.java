@@ -0,0 +1,118 @@
+package jpabook.jpashopself.support;
+
+import jpabook.jpashopself.domain.Address;
+import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.domain.item.Book;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 테스트용 회원, 상품 데이터 (테스트용)
+ * 테스트 클래스에 필드로 등록해서 사용한다. @RegisterExtension TestFixtures fixtures = new TestFixtures();
+ *
+ * - createMember, createBook: 지금 트랜잭션에 저장한다. (@Transactional 테스트는 끝나면 롤백된다)
+ * - saveMember, saveBook: 별도 트랜잭션으로 커밋한다. H2 DB 를 다른 테스트와 같이 쓰므로
+ *   테스트가 끝나면 저장한 회원의 주문(주문상품, 주문 요약, 배송)과 회원, 상품(재고 원장 기록, 샤드)을 지운다.
+ */
+public class TestFixtures implements BeforeEachCallback, AfterEachCallback {
+
+    private EntityManager em;
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> itemIds = new ArrayList<>();
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        em = SharedEntityManagerCreator.createSharedEntityManager(applicationContext.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(applicationContext.getBean(PlatformTransactionManager.class));
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        deleteSaved();
+    }
+
+    public Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    public Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    public Long saveMember(String name) {
+        Long memberId = transactionTemplate.execute(status -> createMember(name).getId());
+        memberIds.add(memberId);
+        return memberId;
+    }
+
+    public Long saveBook(String name, int price, int stockQuantity) {
+        Long itemId = transactionTemplate.execute(status -> createBook(name, price, stockQuantity).getId());
+        itemIds.add(itemId);
+        return itemId;
+    }
+
+    /**
+     * 배송은 주문에서만 참조하므로 주문을 지운 뒤 주문이 없는 배송을 지운다.
+     */
+    private void deleteSaved() {
+        if (memberIds.isEmpty() && itemIds.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!memberIds.isEmpty()) {
+                em.createQuery("delete from OrderItem oi where oi.order.id in" +
+                                " (select o.id from Order o where o.member.id in :memberIds)")
+                        .setParameter("memberIds", memberIds)
+                        .executeUpdate();
+                em.createQuery("delete from OrderSummary s where s.memberId in :memberIds")
+                        .setParameter("memberIds", memberIds)
+                        .executeUpdate();
+                em.createQuery("delete from Order o where o.member.id in :memberIds")
+                        .setParameter("memberIds", memberIds)
+                        .executeUpdate();
+                em.createQuery("delete from Delivery d where not exists" +
+                                " (select o.id from Order o where o.delivery.id = d.id)")
+                        .executeUpdate();
+                em.createQuery("delete from Member m where m.id in :memberIds")
+                        .setParameter("memberIds", memberIds)
+                        .executeUpdate();
+            }
+            if (!itemIds.isEmpty()) {
+                em.createQuery("delete from StockJournal j where j.itemId in :itemIds")
+                        .setParameter("itemIds", itemIds)
+                        .executeUpdate();
+                em.createQuery("delete from ItemStockShard s where s.item.id in :itemIds")
+                        .setParameter("itemIds", itemIds)
+                        .executeUpdate();
+                em.createQuery("delete from Item i where i.id in :itemIds")
+                        .setParameter("itemIds", itemIds)
+                        .executeUpdate();
+            }
+        });
+        memberIds.clear();
+        itemIds.clear();
+    }
+}
@@ -0,0 +1,122 @@
+package jpabook.jpashopself.web;
+
+import jpabook.jpashopself.domain.Member;
+import jpabook.jpashopself.support.TestFixtures;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ReadOnlyOpenEntityManagerInViewInterceptorTest {
+
+    @Autowired EntityManager em;
+    @Autowired ReadOnlyOpenEntityManagerInViewInterceptor interceptor;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @RegisterExtension
+    TestFixtures fixtures = new TestFixtures();
+
+    @Test
+    public void 조회요청은_읽기전용_세션() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v2/members"));
+
+        //when
+        interceptor.preHandle(request);
+        try {
+            Member member = em.find(Member.class, memberId);
+            Session session = em.unwrap(Session.class);
+
+            //then
+            assertTrue(session.isReadOnly(member), "조회 요청에서 읽은 엔티티는 스냅샷을 두지 않는다.");
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+    }
+
+    @Test
+    public void 수정요청은_일반_세션() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("POST", "/members/new"));
+
+        //when
+        interceptor.preHandle(request);
+        try {
+            Member member = em.find(Member.class, memberId);
+
+            //then
+            assertFalse(em.unwrap(Session.class).isReadOnly(member));
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+    }
+
+    @Test
+    public void 조회요청의_읽기쓰기_트랜잭션은_수정을_반영한다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("GET", "/members"));
+
+        //when - 트랜잭션 전에 읽기 전용으로 읽어둔 회원을 읽기-쓰기 트랜잭션에서 수정
+        interceptor.preHandle(request);
+        try {
+            Member member = em.find(Member.class, memberId);
+            Session session = em.unwrap(Session.class);
+            assertTrue(session.isReadOnly(member));
+
+            transactionTemplate.executeWithoutResult(status -> {
+                assertFalse(session.isDefaultReadOnly(), "읽기-쓰기 트랜잭션 동안은 일반 세션");
+                em.find(Member.class, memberId).setName("회원2");
+            });
+
+            assertTrue(session.isDefaultReadOnly(), "트랜잭션이 끝나면 다시 읽기 전용 세션");
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+
+        //then
+        String name = transactionTemplate.execute(status -> em.find(Member.class, memberId).getName());
+        assertEquals("회원2", name);
+    }
+
+    @Test
+    public void 수정요청의_읽기전용_트랜잭션은_스냅샷을_두지_않는다() throws Exception {
+
+        //given
+        Long memberId = fixtures.saveMember("회원1");
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest("POST", "/members/new"));
+        TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+
+        //when
+        interceptor.preHandle(request);
+        try {
+            Session session = em.unwrap(Session.class);
+            Boolean readOnly = readOnlyTemplate.execute(status -> session.isReadOnly(em.find(Member.class, memberId)));
+
+            //then
+            assertTrue(readOnly, "미리 열린 세션에서도 읽기 전용 트랜잭션은 스냅샷을 두지 않는다.");
+            assertFalse(session.isDefaultReadOnly(), "트랜잭션이 끝나면 일반 세션으로 돌아온다.");
+        } finally {
+            interceptor.afterCompletion(request, null);
+        }
+    }
+}